@@ -0,0 +1,68 @@
+package markovstock.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import markovstock.BatchPathGenerator;
+import markovstock.MarkovChain;
+import markovstock.SimulationEngine;
+import markovstock.SimulationSink;
+import markovstock.SplittableRandomSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+* One block of seeded paths on a single thread, walked path by path through
+* predict and all at once by BatchPathGenerator. Both give the same paths.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchWalkBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"256"})
+    public int paths;
+
+    @Param({"21", "252"})
+    public int days;
+
+    private MarkovChain chain;
+    private BatchPathGenerator batch;
+
+    @Setup
+    public void setUp(){
+        chain = Fixtures.chain();
+        batch = new BatchPathGenerator(chain);
+        batch.setBlockSize(paths);
+    }
+
+    @Benchmark
+    public void scalar(Blackhole blackhole){
+        for (int i = 0; i < paths; i++){
+            blackhole.consume(chain.predict(days, Fixtures.STARTING_PRICE,
+            SplittableRandomSource.FACTORY.create(SimulationEngine.pathSeed(SEED, i))));
+        }
+    }
+
+    @Benchmark
+    public void batched(final Blackhole blackhole){
+        batch.generate(0, paths, days, Fixtures.STARTING_PRICE, SEED, new SimulationSink(){
+            @Override
+            public void accept(int sim, double[] path){
+                blackhole.consume(path);
+            }
+        });
+    }
+}
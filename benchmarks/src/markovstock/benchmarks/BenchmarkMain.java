@@ -0,0 +1,32 @@
+package markovstock.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+* Runs the benchmarks with the GC profiler always attached, so every result
+* carries its allocation rate (gc.alloc.rate.norm, bytes per operation) next
+* to its time. Takes the usual JMH command line, e.g.
+* java -jar benchmarks/target/benchmarks.jar WalkBenchmark -p days=252
+*/
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException{
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        boolean hasGcProfiler = false;
+        for (ProfilerConfig profiler: commandLine.getProfilers()){
+            hasGcProfiler |= profiler.getKlass().equals("gc") || profiler.getKlass().equals(GCProfiler.class.getName());
+        }
+        if (!hasGcProfiler){
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,58 @@
+package markovstock.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import markovstock.MarkovChain;
+import markovstock.ParameterStores;
+import markovstock.ParseData;
+import markovstock.PriceHistory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* Fitting chain parameters from parsed CSV rows and from a binary price
+* history. The parameter store discards writes, so only the fit is measured.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EstimationBenchmark {
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private ArrayList<String[]> records;
+    private PriceHistory history;
+
+    @Setup
+    public void setUp(){
+        ParameterStores.setDefault(Fixtures.discardingStore());
+        records = Fixtures.records(rows, 7);
+        history = new PriceHistory(Fixtures.SYMBOL, rows);
+        for (String[] day: records){
+            history.add(java.time.LocalDate.parse(day[0]), Double.parseDouble(day[4]));
+        }
+    }
+
+    @Benchmark
+    public MarkovChain createParametersFromRecords() throws IOException{
+        return ParseData.createParameters(Fixtures.SYMBOL, records);
+    }
+
+    @Benchmark
+    public MarkovChain createParametersFromHistory() throws IOException{
+        return ParseData.createParameters(Fixtures.SYMBOL, history);
+    }
+}
@@ -0,0 +1,77 @@
+package markovstock.benchmarks;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Random;
+import markovstock.MarkovChain;
+import markovstock.ParameterStore;
+
+/**
+* Shared inputs of the benchmarks: a fitted-looking five-state chain and
+* synthetic Yahoo-style CSV rows.
+*/
+final class Fixtures {
+    static final String SYMBOL = "BENCH";
+    static final double AVERAGE_CHANGE = 1.2;
+    static final double STARTING_PRICE = 100;
+
+    private Fixtures(){
+    }
+
+    static double[][] transitions(){
+        return new double[][]{
+            {0.30, 0.15, 0.30, 0.15, 0.10},
+            {0.25, 0.25, 0.20, 0.25, 0.05},
+            {0.30, 0.15, 0.30, 0.15, 0.10},
+            {0.20, 0.30, 0.20, 0.25, 0.05},
+            {0.25, 0.10, 0.25, 0.10, 0.30}
+        };
+    }
+
+    static MarkovChain chain(){
+        return new MarkovChain(SYMBOL, AVERAGE_CHANGE, transitions());
+    }
+
+    /**
+    * Rows of Date,Open,High,Low,Close,Volume,Adj Close, newest first like the
+    * Yahoo export, without the header.
+    */
+    static ArrayList<String[]> records(int numRows, long seed){
+        Random random = new Random(seed);
+        double[] closes = new double[numRows];
+        closes[0] = STARTING_PRICE;
+        for (int i = 1; i < numRows; i++){
+            closes[i] = closes[i-1] * (1 + random.nextGaussian() * 0.015);
+        }
+        LocalDate first = LocalDate.of(1990, 1, 1);
+        ArrayList<String[]> records = new ArrayList<String[]>(numRows);
+        for (int i = numRows - 1; i >= 0; i--){
+            String close = Double.toString(closes[i]);
+            records.add(new String[]{first.plusDays(i).toString(), close, close, close, close, "1000", close});
+        }
+        return records;
+    }
+
+    /**
+    * Parameter store that keeps nothing, so estimation benchmarks measure the
+    * fit rather than disk writes.
+    */
+    static ParameterStore discardingStore(){
+        return new ParameterStore(){
+            @Override
+            public void put(String sym, LocalDate estimationDate, double averageChange, double[][] transitions){
+            }
+
+            @Override
+            public MarkovChain load(String sym) throws IOException{
+                return null;
+            }
+
+            @Override
+            public MarkovChain load(String sym, LocalDate estimationDate) throws IOException{
+                return null;
+            }
+        };
+    }
+}
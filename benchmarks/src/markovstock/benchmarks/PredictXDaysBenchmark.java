@@ -0,0 +1,50 @@
+package markovstock.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import markovstock.MarkovChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* Multi-day transition probabilities, both from a chain whose matrix powers
+* are already cached and from a freshly built chain.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredictXDaysBenchmark {
+    @Param({"1", "21", "252", "5000"})
+    public int days;
+
+    private MarkovChain chain;
+    private double[][] transitions;
+
+    @Setup
+    public void setUp(){
+        transitions = Fixtures.transitions();
+        chain = new MarkovChain(Fixtures.SYMBOL, Fixtures.AVERAGE_CHANGE, transitions);
+        chain.predictXDays(0, 1, days);
+    }
+
+    @Benchmark
+    public double cached(){
+        return chain.predictXDays(0, 1, days);
+    }
+
+    @Benchmark
+    public double cold(){
+        return new MarkovChain(Fixtures.SYMBOL, Fixtures.AVERAGE_CHANGE, transitions).predictXDays(0, 1, days);
+    }
+}
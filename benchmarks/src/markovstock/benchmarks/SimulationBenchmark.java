@@ -0,0 +1,87 @@
+package markovstock.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import markovstock.MarkovChain;
+import markovstock.PathStore;
+import markovstock.SimulationEngine;
+import markovstock.SimulationStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* Whole simulation runs: in memory, aggregated to statistics, persisted
+* through doSimulations into sims.db, and written to a memory-mapped path
+* store. Each invocation starts from an empty simulation table.
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class SimulationBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"1000", "10000"})
+    public int numSims;
+
+    @Param({"21", "252"})
+    public int numDays;
+
+    private MarkovChain chain;
+    private SimulationEngine engine;
+    private File storeFile;
+
+    @Setup
+    public void setUp() throws IOException{
+        chain = Fixtures.chain();
+        engine = new SimulationEngine(chain);
+        storeFile = File.createTempFile("bench", ".paths");
+    }
+
+    @Setup(Level.Invocation)
+    public void eraseSimulations() throws ClassNotFoundException, SQLException{
+        chain.eraseSimulations();
+    }
+
+    @TearDown
+    public void tearDown() throws ClassNotFoundException, SQLException{
+        chain.eraseSimulations();
+        storeFile.delete();
+    }
+
+    @Benchmark
+    public double[][] inMemory() throws InterruptedException{
+        return engine.run(numSims, numDays, Fixtures.STARTING_PRICE, SEED);
+    }
+
+    @Benchmark
+    public SimulationStatistics aggregate() throws InterruptedException{
+        return engine.aggregate(numSims, numDays, Fixtures.STARTING_PRICE, SEED);
+    }
+
+    @Benchmark
+    public void doSimulations() throws ClassNotFoundException, SQLException, InterruptedException{
+        chain.doSimulations(numSims, numDays, Fixtures.STARTING_PRICE, SEED);
+    }
+
+    @Benchmark
+    public void pathStore() throws IOException, InterruptedException{
+        PathStore store = chain.doSimulations(numSims, numDays, Fixtures.STARTING_PRICE, SEED, storeFile);
+        store.close();
+    }
+}
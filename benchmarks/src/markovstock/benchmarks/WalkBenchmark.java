@@ -0,0 +1,65 @@
+package markovstock.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import markovstock.MarkovChain;
+import markovstock.RandomSource;
+import markovstock.XoshiroRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* Single random walks and their two building blocks: choosing the next state
+* and taking a step.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WalkBenchmark {
+    @Param({"21", "252", "1260"})
+    public int days;
+
+    private MarkovChain chain;
+    private RandomSource random;
+    private int state;
+    private double price;
+
+    @Setup
+    public void setUp(){
+        chain = Fixtures.chain();
+        random = new XoshiroRandom(42);
+        price = Fixtures.STARTING_PRICE;
+    }
+
+    @Benchmark
+    public double[] predict(){
+        return chain.predict(days, Fixtures.STARTING_PRICE, random);
+    }
+
+    @Benchmark
+    public int makeSelection(){
+        state = chain.makeSelection(state, random);
+        return state;
+    }
+
+    @Benchmark
+    public double makeStep(){
+        state = (state + 1) % 5;
+        price = chain.makeStep(price, state, random);
+        if (price < 1 || price > 1e6){
+            price = Fixtures.STARTING_PRICE;
+        }
+        return price;
+    }
+}
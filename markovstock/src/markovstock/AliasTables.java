@@ -0,0 +1,91 @@
+package markovstock;
+
+/**
+* Walker alias tables, shared by SamplingTable, SparseTransitions and
+* BatchPathGenerator. A table over n weights takes O(n) to build; drawing
+* from it then takes one uniform value and constant time.
+*/
+final class AliasTables {
+    private AliasTables(){
+    }
+
+    /**
+    * Builds alias tables over weights[$weightStart, $weightStart + $size) into
+    * out[$outStart, $outStart + $size); aliases are offsets within the range.
+    * Weights are normalized by their sum, and weights without any mass give a
+    * uniform choice.
+    *
+    * @param weights
+    * @param weightStart
+    * @param size
+    * @param outProbability
+    * @param outAlias
+    * @param outStart
+    */
+    static void build(double[] weights, int weightStart, int size, double[] outProbability, int[] outAlias, int outStart){
+        if (size == 0){
+            return;
+        }
+        double sum = 0;
+        for (int i = 0; i < size; i++){
+            sum += weights[weightStart + i];
+        }
+        double[] scaled = new double[size];
+        int[] small = new int[size];
+        int[] large = new int[size];
+        int numSmall = 0;
+        int numLarge = 0;
+        for (int i = 0; i < size; i++){
+            scaled[i] = sum > 0 ? weights[weightStart + i] * size / sum : 1.0;
+            if (scaled[i] < 1.0){
+                small[numSmall++] = i;
+            }
+            else{
+                large[numLarge++] = i;
+            }
+        }
+        while (numSmall > 0 && numLarge > 0){
+            int less = small[--numSmall];
+            int more = large[--numLarge];
+            outProbability[outStart + less] = scaled[less];
+            outAlias[outStart + less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0){
+                small[numSmall++] = more;
+            }
+            else{
+                large[numLarge++] = more;
+            }
+        }
+        while (numLarge > 0){
+            int more = large[--numLarge];
+            outProbability[outStart + more] = 1.0;
+            outAlias[outStart + more] = more;
+        }
+        while (numSmall > 0){
+            int less = small[--numSmall];
+            outProbability[outStart + less] = 1.0;
+            outAlias[outStart + less] = less;
+        }
+    }
+
+    /**
+    * Draws from the table in probability[$start, $start + $size) and
+    * alias[$start, $start + $size).
+    *
+    * @param uniform value drawn uniformly from [0, 1)
+    * @param start
+    * @param size
+    * @param probability
+    * @param alias
+    * @return int representing chosen offset within the table
+    */
+    static int draw(double uniform, int start, int size, double[] probability, int[] alias){
+        double scaled = uniform * size;
+        int column = (int) scaled;
+        if (column >= size){
+            column = size - 1;
+        }
+        return (scaled - column) < probability[start + column] ? column : alias[start + column];
+    }
+}
@@ -0,0 +1,178 @@
+package markovstock;
+
+/**
+* One point of a backtest parameter grid: how the chain is refitted as the
+* origin walks forward (a sliding window of moves, exponential decay, or every
+* move so far), how many days ahead it forecasts, and how many days the origin
+* advances between forecasts. Instances are immutable and usable as map keys.
+*/
+public class BacktestConfig {
+    private final int window;
+    private final double halfLife;
+    private final int warmup;
+    private final int horizon;
+    private final int stride;
+
+    private BacktestConfig(int window, double halfLife, int warmup, int horizon, int stride){
+        if (horizon < 1){
+            throw new IllegalArgumentException("Horizon must be at least one day: " + horizon);
+        }
+        if (warmup < 2){
+            throw new IllegalArgumentException("At least two moves are needed before the first forecast: " + warmup);
+        }
+        if (stride < 1){
+            throw new IllegalArgumentException("Stride must be positive: " + stride);
+        }
+        this.window = window;
+        this.halfLife = halfLife;
+        this.warmup = warmup;
+        this.horizon = horizon;
+        this.stride = stride;
+    }
+
+    /**
+    * Refit over the last $moves moves; the first forecast is made once the
+    * window is full.
+    *
+    * @param moves
+    * @param horizon
+    * @return BacktestConfig with a sliding window
+    */
+    public static BacktestConfig window(int moves, int horizon){
+        return new BacktestConfig(moves, 0, moves, horizon, 1);
+    }
+
+    /**
+    * Refit over every move, a move's weight halving every $halfLife bars.
+    *
+    * @param halfLife
+    * @param warmup moves seen before the first forecast
+    * @param horizon
+    * @return BacktestConfig with exponential decay
+    */
+    public static BacktestConfig decay(double halfLife, int warmup, int horizon){
+        if (!(halfLife > 0)){
+            throw new IllegalArgumentException("Half-life must be positive: " + halfLife);
+        }
+        return new BacktestConfig(0, halfLife, warmup, horizon, 1);
+    }
+
+    /**
+    * Exact refit over every move up to the origin, as createParameters does.
+    *
+    * @param warmup moves seen before the first forecast
+    * @param horizon
+    * @return BacktestConfig with an expanding window
+    */
+    public static BacktestConfig expanding(int warmup, int horizon){
+        return new BacktestConfig(0, 0, warmup, horizon, 1);
+    }
+
+    /**
+    * Parses window:N, decay:HALF-LIFE or expanding, as given on the command line.
+    *
+    * @param model
+    * @param warmup moves seen before the first forecast with decay or expanding
+    * @param horizon
+    * @return BacktestConfig described by $model
+    */
+    public static BacktestConfig parse(String model, int warmup, int horizon){
+        String[] parts = model.trim().toLowerCase().split(":");
+        if (parts[0].equals("window") && parts.length == 2){
+            return window(Integer.parseInt(parts[1]), horizon);
+        }
+        if (parts[0].equals("decay") && parts.length == 2){
+            return decay(Double.parseDouble(parts[1]), warmup, horizon);
+        }
+        if (parts[0].equals("expanding") && parts.length == 1){
+            return expanding(warmup, horizon);
+        }
+        throw new IllegalArgumentException("Unknown model " + model + ", expected window:N, decay:HALF-LIFE or expanding");
+    }
+
+    /**
+    * Copy forecasting only every $stride days, for coarser and faster sweeps.
+    *
+    * @param stride
+    * @return BacktestConfig with the given stride
+    */
+    public BacktestConfig withStride(int stride){
+        return new BacktestConfig(window, halfLife, warmup, horizon, stride);
+    }
+
+    /**
+    * New estimator of the kind this configuration refits with.
+    *
+    * @param sym
+    * @return ChainEstimator with nothing added yet
+    */
+    public ChainEstimator newEstimator(String sym){
+        if (window > 0){
+            return OnlineEstimator.window(sym, window);
+        }
+        if (halfLife > 0){
+            return OnlineEstimator.decay(sym, halfLife);
+        }
+        return new ParameterEstimator();
+    }
+
+    /**
+    * Window length in moves, or 0 with decay or an expanding window.
+    *
+    * @return int representing window
+    */
+    public int getWindow(){
+        return window;
+    }
+
+    public double getHalfLife(){
+        return halfLife;
+    }
+
+    public int getWarmup(){
+        return warmup;
+    }
+
+    public int getHorizon(){
+        return horizon;
+    }
+
+    public int getStride(){
+        return stride;
+    }
+
+    @Override
+    public boolean equals(Object other){
+        if (!(other instanceof BacktestConfig)){
+            return false;
+        }
+        BacktestConfig config = (BacktestConfig) other;
+        return window == config.window && Double.compare(halfLife, config.halfLife) == 0
+        && warmup == config.warmup && horizon == config.horizon && stride == config.stride;
+    }
+
+    @Override
+    public int hashCode(){
+        long bits = Double.doubleToLongBits(halfLife);
+        int hash = window;
+        hash = 31 * hash + (int)(bits ^ (bits >>> 32));
+        hash = 31 * hash + warmup;
+        hash = 31 * hash + horizon;
+        return 31 * hash + stride;
+    }
+
+    @Override
+    public String toString(){
+        String model;
+        if (window > 0){
+            model = "window:" + window;
+        }
+        else if (halfLife > 0){
+            model = "decay:" + (halfLife == Math.rint(halfLife) ? String.valueOf((long) halfLife) : String.valueOf(halfLife));
+        }
+        else{
+            model = "expanding";
+        }
+        return model + " h=" + horizon + (stride > 1 ? " stride=" + stride : "");
+    }
+}
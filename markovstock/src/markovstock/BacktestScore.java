@@ -0,0 +1,137 @@
+package markovstock;
+
+/**
+* Running scores of forecast state distributions against the states that
+* were realized: mean log-loss (ln 5, about 1.609, for a uniform forecast),
+* mean multi-class Brier score, the hit rate of the most likely state, and a
+* reliability table binning every forecast probability against how often the
+* state it was given to actually occurred. Scores of separate chunks of a
+* backtest can be merged, so walks split across threads add up to the score
+* of a single walk.
+*/
+public class BacktestScore {
+    public static final int CALIBRATION_BINS = 10;
+    private static final double MIN_PROBABILITY = 1e-12;
+
+    private long count;
+    private double sumLogLoss;
+    private double sumBrier;
+    private long hits;
+    private final long[] binCounts = new long[CALIBRATION_BINS];
+    private final double[] binPredicted = new double[CALIBRATION_BINS];
+    private final long[] binObserved = new long[CALIBRATION_BINS];
+
+    /**
+    * Scores one forecast. Probabilities of zero are clamped when taking the
+    * log, so an impossible outcome costs a large but finite loss.
+    *
+    * @param forecast probability of each state
+    * @param realized state that occurred
+    */
+    public void add(double[] forecast, int realized){
+        double p = forecast[realized];
+        sumLogLoss -= Math.log(Math.max(p, MIN_PROBABILITY));
+        int best = 0;
+        for (int k = 0; k < forecast.length; k++){
+            double outcome = k == realized ? 1 : 0;
+            double error = forecast[k] - outcome;
+            sumBrier += error * error;
+            int bin = Math.min((int)(forecast[k] * CALIBRATION_BINS), CALIBRATION_BINS - 1);
+            binCounts[bin]++;
+            binPredicted[bin] += forecast[k];
+            if (k == realized){
+                binObserved[bin]++;
+            }
+            if (forecast[k] > forecast[best]){
+                best = k;
+            }
+        }
+        if (best == realized){
+            hits++;
+        }
+        count++;
+    }
+
+    /**
+    * Adds the forecasts scored by $other to this score.
+    *
+    * @param other
+    */
+    public void merge(BacktestScore other){
+        count += other.count;
+        sumLogLoss += other.sumLogLoss;
+        sumBrier += other.sumBrier;
+        hits += other.hits;
+        for (int b = 0; b < CALIBRATION_BINS; b++){
+            binCounts[b] += other.binCounts[b];
+            binPredicted[b] += other.binPredicted[b];
+            binObserved[b] += other.binObserved[b];
+        }
+    }
+
+    /**
+    * Number of forecasts scored.
+    *
+    * @return long representing forecasts
+    */
+    public long getCount(){
+        return count;
+    }
+
+    public double getLogLoss(){
+        return count == 0 ? Double.NaN : sumLogLoss / count;
+    }
+
+    public double getBrierScore(){
+        return count == 0 ? Double.NaN : sumBrier / count;
+    }
+
+    /**
+    * Fraction of forecasts whose most likely state was the realized one.
+    *
+    * @return double representing hit rate
+    */
+    public double getHitRate(){
+        return count == 0 ? Double.NaN : (double) hits / count;
+    }
+
+    /**
+    * Reliability table: per probability bin, the mean forecast probability,
+    * the frequency the states were realized with, and the number of
+    * probabilities in the bin. Empty bins are NaN, NaN, 0.
+    *
+    * @return double[][] representing one row per bin
+    */
+    public double[][] getCalibration(){
+        double[][] table = new double[CALIBRATION_BINS][3];
+        for (int b = 0; b < CALIBRATION_BINS; b++){
+            long n = binCounts[b];
+            table[b][0] = n == 0 ? Double.NaN : binPredicted[b] / n;
+            table[b][1] = n == 0 ? Double.NaN : (double) binObserved[b] / n;
+            table[b][2] = n;
+        }
+        return table;
+    }
+
+    /**
+    * Expected calibration error: the gap between mean forecast probability
+    * and realized frequency, averaged over bins weighted by their size.
+    *
+    * @return double representing calibration error
+    */
+    public double getCalibrationError(){
+        long total = 0;
+        double sum = 0;
+        for (int b = 0; b < CALIBRATION_BINS; b++){
+            total += binCounts[b];
+            sum += Math.abs(binPredicted[b] - binObserved[b]);
+        }
+        return total == 0 ? Double.NaN : sum / total;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("n=%d logloss=%.4f brier=%.4f hit=%.4f ece=%.4f",
+        count, getLogLoss(), getBrierScore(), getHitRate(), getCalibrationError());
+    }
+}
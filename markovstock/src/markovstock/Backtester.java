@@ -0,0 +1,351 @@
+package markovstock;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+* Walk-forward backtest of chain forecasts. At every origin the chain is
+* refitted from the closes up to that day only, the state of the last known
+* move is taken as the current state, and the distribution of the state h
+* days ahead (the current state's row of P^h, which is also where predict's
+* random walks land on day h) is scored against the move that happened, both
+* classified against the fitted average change.
+*
+* Estimators are fed one close per day, so refitting costs O(1) per origin
+* with OnlineEstimator and an incremental recount with ParameterEstimator.
+* The origins of each symbol are cut into chunks that run in parallel; a
+* chunk first replays enough earlier closes to rebuild the estimator state a
+* single sequential walk would have, and chunk scores are merged in order, so
+* results do not depend on the number of threads.
+*
+* Usage: Backtester --data DIR | --symbols AAPL,MSFT [--models window:250,
+*   decay:60,expanding] [--horizons 1,5,21] [--warmup 250] [--stride 1]
+*   [--threads N] [--calibration] [--metrics]
+*/
+public class Backtester {
+    private static final int NUM_STATES = 5;
+    private static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    private final ExecutorService executor;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+    * Constructor with the executor chunks run on given; it is not shut down.
+    *
+    * @param executor
+    */
+    public Backtester(ExecutorService executor){
+        this.executor = executor;
+    }
+
+    /**
+    * Sets how many origins one parallel task walks (default 1024).
+    *
+    * @param chunkSize
+    */
+    public void setChunkSize(int chunkSize){
+        if (chunkSize < 1){
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+    * Backtests one configuration on one history.
+    *
+    * @param history
+    * @param config
+    * @return BacktestScore over every origin
+    * @throws InterruptedException
+    */
+    public BacktestScore run(PriceHistory history, BacktestConfig config) throws InterruptedException{
+        Map<String, PriceHistory> histories = Collections.singletonMap(history.getSymbol(), history);
+        return sweep(histories, Collections.singletonList(config)).get(history.getSymbol()).get(config);
+    }
+
+    /**
+    * Backtests every configuration on every history, all chunks of all
+    * pairs sharing the executor.
+    *
+    * @param histories
+    * @param configs
+    * @return Map from symbol to a map from configuration to score, in the order given
+    * @throws InterruptedException
+    */
+    public Map<String, Map<BacktestConfig, BacktestScore>> sweep(Map<String, PriceHistory> histories,
+    Collection<BacktestConfig> configs) throws InterruptedException{
+        long timer = Metrics.start();
+        List<Callable<BacktestScore>> tasks = new ArrayList<Callable<BacktestScore>>();
+        List<Integer> chunkCounts = new ArrayList<Integer>();
+        for (PriceHistory history: histories.values()){
+            final String sym = history.getSymbol();
+            final double[] closes = history.getCloses();
+            for (final BacktestConfig config: configs){
+                int first = config.getWarmup();
+                int last = closes.length - 1 - config.getHorizon();
+                int numOrigins = last < first ? 0 : (last - first) / config.getStride() + 1;
+                int chunks = 0;
+                for (int k = 0; k < numOrigins; k += chunkSize){
+                    final int from = first + k * config.getStride();
+                    final int to = first + Math.min(k + chunkSize, numOrigins) * config.getStride();
+                    tasks.add(new Callable<BacktestScore>(){
+                        @Override
+                        public BacktestScore call(){
+                            return walk(sym, closes, config, from, to);
+                        }
+                    });
+                    chunks++;
+                }
+                chunkCounts.add(chunks);
+            }
+        }
+        List<Future<BacktestScore>> results = executor.invokeAll(tasks);
+        Map<String, Map<BacktestConfig, BacktestScore>> scores = new LinkedHashMap<String, Map<BacktestConfig, BacktestScore>>();
+        int task = 0;
+        int pair = 0;
+        for (PriceHistory history: histories.values()){
+            Map<BacktestConfig, BacktestScore> symbolScores = new LinkedHashMap<BacktestConfig, BacktestScore>();
+            for (BacktestConfig config: configs){
+                BacktestScore score = new BacktestScore();
+                for (int c = 0; c < chunkCounts.get(pair); c++){
+                    score.merge(get(results.get(task++)));
+                }
+                symbolScores.put(config, score);
+                pair++;
+            }
+            scores.put(history.getSymbol(), symbolScores);
+        }
+        Metrics.stop(Metrics.Phase.BACKTEST, timer);
+        return scores;
+    }
+
+    private static BacktestScore get(Future<BacktestScore> result) throws InterruptedException{
+        try{
+            return result.get();
+        }
+        catch (ExecutionException e){
+            if (e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+    * Scores origins $from, $from + stride, ... up to $to. A window estimator
+    * needs closes from two windows back, since the moves in the window were
+    * classified against the average of the window before them; the other
+    * estimators remember every move and replay from the start.
+    */
+    static BacktestScore walk(String sym, double[] closes, BacktestConfig config, int from, int to){
+        BacktestScore score = new BacktestScore();
+        ChainEstimator estimator = config.newEstimator(sym);
+        if (estimator instanceof OnlineEstimator){
+            ((OnlineEstimator) estimator).setPublishInterval(Integer.MAX_VALUE);
+        }
+        int horizon = config.getHorizon();
+        int window = config.getWindow();
+        int fed = window > 0 ? Math.max(0, from - 2 * window + 1) : 0;
+        double[] forecast = new double[NUM_STATES];
+        double[] next = new double[NUM_STATES];
+        for (int origin = from; origin < to; origin += config.getStride()){
+            while (fed <= origin){
+                estimator.add(closes[fed++]);
+            }
+            double average = estimator.getAverageChange();
+            int current = ParseData.classifyDifference(change(closes, origin - 1), average);
+            forecast(estimator.getTransitionMatrix(), current, horizon, forecast, next);
+            int realized = ParseData.classifyDifference(change(closes, origin - 1 + horizon), average);
+            score.add(forecast, realized);
+        }
+        return score;
+    }
+
+    private static double change(double[] closes, int move){
+        return 100.0 * ((closes[move + 1] - closes[move]) / closes[move]);
+    }
+
+    /**
+    * Fills $forecast with row $state of the normalized $matrix to the power
+    * $horizon, by $horizon vector-matrix products.
+    */
+    private static void forecast(double[][] matrix, int state, int horizon, double[] forecast, double[] next){
+        matrix = SamplingTable.normalizeRows(matrix);
+        Arrays.fill(forecast, 0);
+        forecast[state] = 1;
+        for (int day = 0; day < horizon; day++){
+            Arrays.fill(next, 0);
+            for (int i = 0; i < NUM_STATES; i++){
+                double p = forecast[i];
+                if (p != 0){
+                    double[] row = matrix[i];
+                    for (int j = 0; j < NUM_STATES; j++){
+                        next[j] += p * row[j];
+                    }
+                }
+            }
+            System.arraycopy(next, 0, forecast, 0, NUM_STATES);
+        }
+    }
+
+    public static void main(String[] args){
+        System.setProperty("java.awt.headless", "true");
+        File dataPath = null;
+        List<String> symbols = new ArrayList<String>();
+        String models = "window:250,decay:60,expanding";
+        String horizons = "1,5,21";
+        int warmup = 250;
+        int stride = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean calibration = false;
+        List<BacktestConfig> configs = new ArrayList<BacktestConfig>();
+        try{
+            for (int i = 0; i < args.length; i++){
+                String option = args[i];
+                if (option.equals("--calibration")){
+                    calibration = true;
+                    continue;
+                }
+                if (option.equals("--metrics")){
+                    Metrics.setEnabled(true);
+                    continue;
+                }
+                if (i + 1 >= args.length){
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[++i];
+                if (option.equals("--data")){
+                    dataPath = new File(value);
+                }
+                else if (option.equals("--symbols")){
+                    for (String sym: value.split(",")){
+                        if (!sym.trim().isEmpty()){
+                            symbols.add(sym.trim().toUpperCase());
+                        }
+                    }
+                }
+                else if (option.equals("--models")){
+                    models = value;
+                }
+                else if (option.equals("--horizons")){
+                    horizons = value;
+                }
+                else if (option.equals("--warmup")){
+                    warmup = Integer.parseInt(value);
+                }
+                else if (option.equals("--stride")){
+                    stride = Integer.parseInt(value);
+                }
+                else if (option.equals("--threads")){
+                    threads = Integer.parseInt(value);
+                }
+                else{
+                    throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+            if (symbols.isEmpty() && dataPath == null){
+                throw new IllegalArgumentException("No symbols given.");
+            }
+            for (String model: models.split(",")){
+                for (String horizon: horizons.split(",")){
+                    configs.add(BacktestConfig.parse(model, warmup, Integer.parseInt(horizon.trim())).withStride(stride));
+                }
+            }
+        }
+        catch (IllegalArgumentException e){
+            System.err.println(e.getMessage());
+            System.err.println("Usage: Backtester --data DIR | --symbols AAPL,MSFT [--models window:250,decay:60,expanding] " +
+            "[--horizons 1,5,21] [--warmup 250] [--stride 1] [--threads N] [--calibration] [--metrics]");
+            System.exit(2);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try{
+            Map<String, PriceHistory> histories = loadHistories(dataPath, symbols, executor);
+            long start = System.nanoTime();
+            Map<String, Map<BacktestConfig, BacktestScore>> scores = new Backtester(executor).sweep(histories, configs);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Map<BacktestConfig, BacktestScore> pooled = new LinkedHashMap<BacktestConfig, BacktestScore>();
+            long forecasts = 0;
+            for (BacktestConfig config: configs){
+                pooled.put(config, new BacktestScore());
+            }
+            for (Map.Entry<String, Map<BacktestConfig, BacktestScore>> entry: scores.entrySet()){
+                for (Map.Entry<BacktestConfig, BacktestScore> score: entry.getValue().entrySet()){
+                    System.out.println(entry.getKey() + " " + score.getKey() + ": " + score.getValue());
+                    pooled.get(score.getKey()).merge(score.getValue());
+                    forecasts += score.getValue().getCount();
+                }
+            }
+            if (scores.size() > 1){
+                for (Map.Entry<BacktestConfig, BacktestScore> score: pooled.entrySet()){
+                    System.out.println("ALL " + score.getKey() + ": " + score.getValue());
+                }
+            }
+            if (calibration){
+                for (Map.Entry<BacktestConfig, BacktestScore> score: pooled.entrySet()){
+                    System.out.println("Calibration " + score.getKey() + " (predicted, observed, count):");
+                    for (double[] bin: score.getValue().getCalibration()){
+                        System.out.println(String.format("  %.4f %.4f %d", bin[0], bin[1], (long) bin[2]));
+                    }
+                }
+            }
+            System.out.println(String.format("%d symbols, %d configurations, %d forecasts in %.2f s (%.0f forecasts/s)",
+            scores.size(), configs.size(), forecasts, seconds, forecasts / seconds));
+            if (Metrics.isEnabled()){
+                System.out.print(Metrics.summary());
+            }
+        }
+        catch (IOException e){
+            System.err.println("Could not load data: " + e.getMessage());
+            System.exit(1);
+        }
+        catch (InterruptedException e){
+            System.err.println("Interrupted.");
+            System.exit(1);
+        }
+        finally{
+            executor.shutdown();
+        }
+    }
+
+    /**
+    * Histories of local CSV files under $dataPath, or else of $symbols from
+    * the default history cache, downloading the ones not cached yet.
+    */
+    private static Map<String, PriceHistory> loadHistories(File dataPath, List<String> symbols, ExecutorService executor)
+    throws IOException, InterruptedException{
+        Map<String, PriceHistory> histories = new TreeMap<String, PriceHistory>();
+        if (dataPath != null){
+            Map<String, PriceHistory> loaded = dataPath.isDirectory()
+            ? PriceHistoryLoader.loadDirectory(dataPath, executor)
+            : Collections.singletonMap(PriceHistoryLoader.symbolOf(dataPath), PriceHistoryLoader.load(dataPath));
+            for (Map.Entry<String, PriceHistory> entry: loaded.entrySet()){
+                if (symbols.isEmpty() || symbols.contains(entry.getKey())){
+                    histories.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return histories;
+        }
+        PriceHistoryCache cache = PriceHistoryCache.getDefault();
+        for (String sym: symbols){
+            if (!cache.contains(sym)){
+                cache.store(ParseData.obtainHistory(sym, null));
+            }
+            histories.put(sym, cache.load(sym));
+        }
+        return histories;
+    }
+}
@@ -0,0 +1,183 @@
+package markovstock;
+
+/**
+* Generates a block of first-order chain paths together, one day at a time,
+* holding the block as parallel arrays of random state, chain state and price
+* rather than one walk after another. Each day is two tight loops over the
+* block, one choosing next states from the alias tables and one stepping
+* prices, with the per-state base, width and draw mask of a
+* UniformDiscretizer looked up from tables instead of branched on.
+*
+* Paths are bit-for-bit those of MarkovChain.predict with the same seeds: each
+* lane keeps its own generator and draws in the same order. For
+* SplittableRandomSource the generator is inlined as a long[] of seeds, and a
+* state that draws nothing (no change) simply does not advance its seed, so
+* every lane runs the same instructions whatever its state.
+*/
+public class BatchPathGenerator {
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+
+    private final int numStates;
+    private final double[] probability;
+    private final int[] alias;
+    private final double[] base;
+    private final double[] width;
+    private final long[] drawMask;
+    private final RandomSourceFactory randomFactory;
+    private final boolean inlineRandom;
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+
+    /**
+    * Constructor tabulating a chain's current transitions and discretizer.
+    *
+    * @param chain
+    * @throws IllegalArgumentException if the chain's discretizer is not a UniformDiscretizer
+    */
+    public BatchPathGenerator(MarkovChain chain){
+        if (!(chain.getDiscretizer() instanceof UniformDiscretizer)){
+            throw new IllegalArgumentException("Batch generation needs a UniformDiscretizer");
+        }
+        UniformDiscretizer discretizer = (UniformDiscretizer) chain.getDiscretizer();
+        SamplingTable table = chain.getSamplingTable();
+        this.numStates = table.getNumStates();
+        this.probability = table.getProbabilities();
+        this.alias = table.getAliases();
+        this.base = new double[numStates];
+        this.width = new double[numStates];
+        this.drawMask = new long[numStates];
+        for (int s = 0; s < numStates; s++){
+            base[s] = discretizer.getBase(s);
+            width[s] = discretizer.getWidth(s);
+            drawMask[s] = discretizer.drawsChange(s) ? -1L : 0L;
+        }
+        this.randomFactory = chain.getRandomFactory();
+        this.inlineRandom = randomFactory == SplittableRandomSource.FACTORY;
+    }
+
+    /**
+    * Batch generator for $generator, or null if it cannot be batched (not a
+    * MarkovChain, or its steps are not uniform within states).
+    *
+    * @param generator
+    * @return BatchPathGenerator or null
+    */
+    public static BatchPathGenerator forGenerator(PathGenerator generator){
+        if (generator instanceof MarkovChain && ((MarkovChain) generator).getDiscretizer() instanceof UniformDiscretizer){
+            return new BatchPathGenerator((MarkovChain) generator);
+        }
+        return null;
+    }
+
+    /**
+    * Sets how many paths are advanced together.
+    *
+    * @param blockSize
+    */
+    public void setBlockSize(int blockSize){
+        if (blockSize < 1){
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+    * Generates simulations $from (inclusive) to $to (exclusive) of a run and
+    * hands each to $sink, in simulation order.
+    *
+    * @param from
+    * @param to
+    * @param numDays
+    * @param startingPrice
+    * @param seed seed of the whole run, see SimulationEngine.pathSeed
+    * @param sink
+    */
+    public void generate(int from, int to, int numDays, double startingPrice, long seed, SimulationSink sink){
+        int capacity = Math.min(blockSize, Math.max(to - from, 0));
+        long[] seeds = new long[capacity];
+        RandomSource[] randoms = inlineRandom ? null : new RandomSource[capacity];
+        int[] state = new int[capacity];
+        double[] price = new double[capacity];
+        for (int start = from; start < to; start += capacity){
+            int lanes = Math.min(capacity, to - start);
+            double[][] paths = new double[lanes][numDays];
+            for (int k = 0; k < lanes; k++){
+                long pathSeed = SimulationEngine.pathSeed(seed, start + k);
+                if (inlineRandom){
+                    seeds[k] = pathSeed;
+                }
+                else{
+                    randoms[k] = randomFactory.create(pathSeed);
+                }
+                price[k] = startingPrice;
+            }
+            if (numDays > 0){
+                if (inlineRandom){
+                    walk(lanes, numDays, seeds, state, price, paths);
+                }
+                else{
+                    walk(lanes, numDays, randoms, state, price, paths);
+                }
+            }
+            for (int k = 0; k < lanes; k++){
+                sink.accept(start + k, paths[k]);
+            }
+        }
+    }
+
+    private void walk(int lanes, int numDays, long[] seeds, int[] state, double[] price, double[][] paths){
+        for (int k = 0; k < lanes; k++){
+            long next = seeds[k] + SplitMix.GOLDEN_GAMMA;
+            seeds[k] = next;
+            state[k] = (int)(SplitMix.toDouble(next) * numStates);
+        }
+        step(lanes, 0, seeds, state, price, paths);
+        for (int day = 1; day < numDays; day++){
+            for (int k = 0; k < lanes; k++){
+                long next = seeds[k] + SplitMix.GOLDEN_GAMMA;
+                seeds[k] = next;
+                state[k] = select(state[k], SplitMix.toDouble(next));
+            }
+            step(lanes, day, seeds, state, price, paths);
+        }
+    }
+
+    private void step(int lanes, int day, long[] seeds, int[] state, double[] price, double[][] paths){
+        for (int k = 0; k < lanes; k++){
+            int s = state[k];
+            long next = seeds[k] + SplitMix.GOLDEN_GAMMA;
+            double change = base[s] + width[s] * SplitMix.toDouble(next);
+            seeds[k] += SplitMix.GOLDEN_GAMMA & drawMask[s];
+            price[k] = price[k] * (1 + change/100);
+            paths[k][day] = price[k];
+        }
+    }
+
+    private void walk(int lanes, int numDays, RandomSource[] randoms, int[] state, double[] price, double[][] paths){
+        for (int k = 0; k < lanes; k++){
+            state[k] = (int)(randoms[k].nextDouble() * numStates);
+        }
+        step(lanes, 0, randoms, state, price, paths);
+        for (int day = 1; day < numDays; day++){
+            for (int k = 0; k < lanes; k++){
+                state[k] = select(state[k], randoms[k].nextDouble());
+            }
+            step(lanes, day, randoms, state, price, paths);
+        }
+    }
+
+    private void step(int lanes, int day, RandomSource[] randoms, int[] state, double[] price, double[][] paths){
+        for (int k = 0; k < lanes; k++){
+            int s = state[k];
+            double change = drawMask[s] != 0 ? base[s] + width[s] * randoms[k].nextDouble() : base[s];
+            price[k] = price[k] * (1 + change/100);
+            paths[k][day] = price[k];
+        }
+    }
+
+    /**
+    * Same choice as SamplingTable.sample, on the shared tables.
+    */
+    private int select(int currState, double uniform){
+        return AliasTables.draw(uniform, currState * numStates, numStates, probability, alias);
+    }
+}
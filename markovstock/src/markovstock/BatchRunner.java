@@ -0,0 +1,358 @@
+package markovstock;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+* Headless command-line entry point that fits and simulates many symbols at
+* once. Symbols run concurrently on a bounded worker pool while their paths
+* share one fork-join pool; nothing here touches AWT or Swing.
+*
+* Usage: BatchRunner --symbols AAPL,MSFT | --symbols-file FILE | --data DIR
+*   [--days 252] [--sims 10000] [--seed N] [--price P | --prices FILE]
+*   [--fit [--source URL-PREFIX|DIR] [--fetch-concurrency 32] [--rate PER-SEC]]
+*   [--workers N] [--threads N] [--output stats|sqlite|runs|store|none|
+*   csv|csv.gz|columnar|columnar.gz] [--output-dir DIR] [--metrics]
+*/
+public class BatchRunner {
+    private final List<String> symbols = new ArrayList<String>();
+    private int numDays = 252;
+    private int numSims = 10000;
+    private long seed = System.nanoTime();
+    private double price = Double.NaN;
+    private boolean fit = false;
+    private HistorySource source = UrlHistorySource.YAHOO;
+    private int fetchConcurrency = 32;
+    private double rate = 0;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String output = "stats";
+    private File outputDir = new File(".");
+    private File dataPath;
+    private Map<String, PriceHistory> histories;
+
+    private ForkJoinPool pathPool;
+    private final AtomicLong pathsSimulated = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+
+    public static void main(String[] args){
+        System.setProperty("java.awt.headless", "true");
+        BatchRunner runner = new BatchRunner();
+        try{
+            runner.parseArguments(args);
+        }
+        catch (IllegalArgumentException | IOException e){
+            System.err.println(e.getMessage());
+            System.err.println("Usage: BatchRunner --symbols AAPL,MSFT | --symbols-file FILE | --data DIR " +
+            "[--days 252] [--sims 10000] [--seed N] [--price P | --prices FILE] [--fit [--source URL-PREFIX|DIR] " +
+            "[--fetch-concurrency 32] [--rate PER-SEC]] [--workers N] [--threads N] " +
+            "[--output stats|sqlite|runs|store|none|csv|csv.gz|columnar|columnar.gz] [--output-dir DIR] [--metrics]");
+            System.exit(2);
+        }
+        try{
+            System.exit(runner.run() ? 0 : 1);
+        }
+        catch (IOException e){
+            System.err.println("Could not load data: " + e.getMessage());
+            System.exit(1);
+        }
+        catch (InterruptedException e){
+            System.err.println("Interrupted.");
+            System.exit(1);
+        }
+    }
+
+    /**
+    * Reads command-line options.
+    *
+    * @param args
+    * @throws IOException
+    */
+    public void parseArguments(String[] args) throws IOException{
+        for (int i = 0; i < args.length; i++){
+            String option = args[i];
+            if (option.equals("--fit")){
+                fit = true;
+                continue;
+            }
+            if (option.equals("--metrics")){
+                Metrics.setEnabled(true);
+                continue;
+            }
+            if (i + 1 >= args.length){
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            if (option.equals("--symbols")){
+                for (String sym: value.split(",")){
+                    addSymbol(sym);
+                }
+            }
+            else if (option.equals("--symbols-file")){
+                BufferedReader reader = new BufferedReader(new FileReader(value));
+                String line;
+                while ((line = reader.readLine()) != null){
+                    addSymbol(line);
+                }
+                reader.close();
+            }
+            else if (option.equals("--days")){
+                numDays = Integer.parseInt(value);
+            }
+            else if (option.equals("--sims")){
+                numSims = Integer.parseInt(value);
+            }
+            else if (option.equals("--seed")){
+                seed = Long.parseLong(value);
+            }
+            else if (option.equals("--price")){
+                price = Double.parseDouble(value);
+            }
+            else if (option.equals("--workers")){
+                workers = Integer.parseInt(value);
+            }
+            else if (option.equals("--threads")){
+                threads = Integer.parseInt(value);
+            }
+            else if (option.equals("--prices")){
+                PriceSources.setDefault(new FilePriceSource(new File(value)));
+            }
+            else if (option.equals("--source")){
+                source = value.contains("://") ? new UrlHistorySource(value) : new FileHistorySource(new File(value));
+            }
+            else if (option.equals("--fetch-concurrency")){
+                fetchConcurrency = Integer.parseInt(value);
+            }
+            else if (option.equals("--rate")){
+                rate = Double.parseDouble(value);
+            }
+            else if (option.equals("--output")){
+                output = value;
+            }
+            else if (option.equals("--data")){
+                dataPath = new File(value);
+            }
+            else if (option.equals("--output-dir")){
+                outputDir = new File(value);
+            }
+            else{
+                throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (symbols.isEmpty() && dataPath == null){
+            throw new IllegalArgumentException("No symbols given.");
+        }
+        if (numDays < 1){
+            throw new IllegalArgumentException("At least one day must be simulated: " + numDays);
+        }
+        if (numSims < 1){
+            throw new IllegalArgumentException("At least one simulation must be run: " + numSims);
+        }
+        if (!output.equals("stats") && !output.equals("sqlite") && !output.equals("runs") && !output.equals("store") && !output.equals("none")){
+            try{
+                ExportFormat.forName(output);
+            }
+            catch (IllegalArgumentException e){
+                throw new IllegalArgumentException("Unknown output " + output);
+            }
+        }
+    }
+
+    private void addSymbol(String sym){
+        String trimmed = sym.trim();
+        if (!trimmed.isEmpty() && !trimmed.startsWith("#")){
+            symbols.add(trimmed.toUpperCase());
+        }
+    }
+
+    /**
+    * Fits and simulates every symbol, then prints throughput. With --data the
+    * local CSV files are parsed in parallel first and every symbol is fitted
+    * from them; without --symbols all files are used.
+    *
+    * @return boolean representing whether every symbol succeeded
+    * @throws IOException
+    * @throws InterruptedException
+    */
+    public boolean run() throws IOException, InterruptedException{
+        if (dataPath != null){
+            histories = loadData();
+            if (symbols.isEmpty()){
+                symbols.addAll(histories.keySet());
+            }
+        }
+        if (!output.equals("stats") && !output.equals("sqlite") && !output.equals("runs") && !output.equals("none") && !outputDir.exists()){
+            outputDir.mkdirs();
+        }
+        pathPool = new ForkJoinPool(threads);
+        ExecutorService symbolPool = Executors.newFixedThreadPool(workers);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        long start = System.nanoTime();
+        try{
+            if (output.equals("sqlite")){
+                eraseTables();
+            }
+            final Map<String, FetchPipeline.Result> fits = fit && histories == null ? fetchAndFit() : null;
+            for (final String sym: symbols){
+                if (fits != null && !fits.get(sym).isSuccess()){
+                    final Exception error = fits.get(sym).getError();
+                    results.add(symbolPool.submit(new Callable<String>(){
+                        @Override
+                        public String call() throws Exception{
+                            throw error;
+                        }
+                    }));
+                    continue;
+                }
+                results.add(symbolPool.submit(new Callable<String>(){
+                    @Override
+                    public String call() throws Exception{
+                        return runSymbol(sym);
+                    }
+                }));
+            }
+            boolean succeeded = true;
+            for (int i = 0; i < results.size(); i++){
+                try{
+                    System.out.println(results.get(i).get());
+                }
+                catch (ExecutionException e){
+                    succeeded = false;
+                    System.err.println(symbols.get(i) + "\tfailed: " + e.getCause());
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("%d symbols, %d paths, %d rows in %.3f s: %.0f paths/sec, %.0f rows/sec",
+            symbols.size(), pathsSimulated.get(), rowsWritten.get(), seconds,
+            pathsSimulated.get() / seconds, rowsWritten.get() / seconds));
+            if (Metrics.isEnabled()){
+                System.out.print(Metrics.summary());
+            }
+            return succeeded;
+        }
+        finally{
+            symbolPool.shutdownNow();
+            pathPool.shutdownNow();
+        }
+    }
+
+    private Map<String, PriceHistory> loadData() throws IOException, InterruptedException{
+        if (dataPath.isDirectory()){
+            return PriceHistoryLoader.loadDirectory(dataPath);
+        }
+        PriceHistory history = PriceHistoryLoader.load(dataPath);
+        return Collections.singletonMap(history.getSymbol(), history);
+    }
+
+    /**
+    * Refreshes and fits every symbol up front through a FetchPipeline, so
+    * fetches overlap instead of running one per worker.
+    */
+    private Map<String, FetchPipeline.Result> fetchAndFit() throws InterruptedException{
+        FetchPipeline pipeline = new FetchPipeline(source);
+        pipeline.setCache(PriceHistoryCache.getDefault());
+        pipeline.setMaxConcurrentFetches(fetchConcurrency);
+        pipeline.setRequestsPerSecond(rate);
+        long start = System.nanoTime();
+        Map<String, FetchPipeline.Result> fits = pipeline.run(symbols);
+        int fitted = 0;
+        for (FetchPipeline.Result result: fits.values()){
+            if (result.isSuccess()){
+                fitted++;
+            }
+        }
+        System.out.println(String.format("fitted %d of %d symbols in %.3f s", fitted, symbols.size(), (System.nanoTime() - start) / 1e9));
+        return fits;
+    }
+
+    private void eraseTables() throws InterruptedException{
+        for (String sym: symbols){
+            try{
+                new MarkovChain(sym, 0, new double[][]{{1}}).eraseSimulations();
+            }
+            catch (ClassNotFoundException | java.sql.SQLException e){
+                System.err.println(sym + "\tcould not erase previous simulations: " + e);
+            }
+        }
+    }
+
+    private String runSymbol(String sym) throws Exception{
+        MarkovChain chain;
+        if (histories != null){
+            PriceHistory history = histories.get(sym);
+            if (history == null){
+                throw new FileNotFoundException("No data file for " + sym);
+            }
+            chain = ParseData.createParameters(sym, history);
+        }
+        else{
+            chain = ChainCache.getDefault().get(sym);
+        }
+        double startingPrice = Double.isNaN(price) ? chain.getCurentPrice() : price;
+        SimulationEngine engine = new SimulationEngine(chain, pathPool);
+        String summary;
+        if (output.equals("stats")){
+            SimulationStatistics statistics = engine.aggregate(numSims, numDays, startingPrice, seed);
+            summary = String.format("mean %.4f\tVaR95 %.4f\tES95 %.4f\tP(up) %.4f",
+            statistics.getMean(numDays - 1), statistics.getValueAtRisk(0.95),
+            statistics.getExpectedShortfall(0.95), statistics.getProbabilityAbove(startingPrice));
+        }
+        else if (output.equals("sqlite")){
+            chain.doSimulations(numSims, numDays, startingPrice, seed, engine);
+            rowsWritten.addAndGet(numSims);
+            summary = numSims + " rows in SIMULATION" + sym;
+        }
+        else if (output.equals("runs")){
+            long runId = chain.doSimulationRun(numSims, numDays, startingPrice, seed, engine);
+            long rows = (long) numSims * numDays;
+            rowsWritten.addAndGet(rows);
+            summary = rows + " rows in run " + runId;
+        }
+        else if (output.equals("store")){
+            File storeFile = new File(outputDir, sym + ".paths");
+            PathStore store = PathStore.create(storeFile, numSims, numDays, startingPrice);
+            try{
+                engine.run(numSims, numDays, startingPrice, seed, store);
+            }
+            finally{
+                store.close();
+            }
+            rowsWritten.addAndGet(numSims);
+            summary = numSims + " paths in " + storeFile.getPath();
+        }
+        else if (output.equals("none")){
+            engine.run(numSims, numDays, startingPrice, seed, new SimulationSink(){
+                @Override
+                public void accept(int sim, double[] path){
+                }
+            });
+            summary = "discarded";
+        }
+        else if (output.startsWith("csv") || output.startsWith("columnar")){
+            ExportFormat format = ExportFormat.forName(output);
+            File exportFile = new File(outputDir, sym + format.getExtension());
+            chain.exportSimulations(numSims, numDays, startingPrice, seed, format, exportFile, engine);
+            rowsWritten.addAndGet(numSims);
+            summary = numSims + " paths in " + exportFile.getPath();
+        }
+        else{
+            throw new IllegalArgumentException("Unknown output " + output);
+        }
+        pathsSimulated.addAndGet(numSims);
+        return sym + "\tstart " + startingPrice + "\t" + summary;
+    }
+}
@@ -0,0 +1,149 @@
+package markovstock;
+
+import java.util.Arrays;
+
+/**
+* Discretizer over contiguous bins of percent change given by their edges:
+* state s covers [edges[s], edges[s+1]), with changes outside the outer edges
+* put in the outer bins. A step draws uniformly within its bin, so sampling
+* is a single multiply-add whatever the number of states.
+*/
+public class BinDiscretizer implements UniformDiscretizer {
+    private final double[] edges;
+    private final double[] base;
+    private final double[] width;
+    private final double maxChange;
+
+    /**
+    * Constructor with ascending bin edges given; $edges has one more entry
+    * than there are states.
+    *
+    * @param edges
+    */
+    public BinDiscretizer(double[] edges){
+        if (edges.length < 2){
+            throw new IllegalArgumentException("At least one bin is needed");
+        }
+        for (int i = 1; i < edges.length; i++){
+            if (!(edges[i] >= edges[i-1])){
+                throw new IllegalArgumentException("Bin edges must be ascending");
+            }
+        }
+        this.edges = edges.clone();
+        int numStates = edges.length - 1;
+        this.base = new double[numStates];
+        this.width = new double[numStates];
+        for (int s = 0; s < numStates; s++){
+            base[s] = edges[s];
+            width[s] = edges[s+1] - edges[s];
+        }
+        this.maxChange = Math.max(Math.abs(edges[0]), Math.abs(edges[numStates]));
+    }
+
+    /**
+    * Bins holding equal numbers of the observed changes.
+    *
+    * @param changes observed percent changes
+    * @param numStates
+    * @return BinDiscretizer with empirical quantiles as edges
+    */
+    public static BinDiscretizer quantiles(double[] changes, int numStates){
+        if (changes.length == 0){
+            throw new IllegalArgumentException("No changes to take quantiles of");
+        }
+        double[] sorted = changes.clone();
+        Arrays.sort(sorted);
+        double[] edges = new double[numStates + 1];
+        for (int i = 0; i <= numStates; i++){
+            double position = (double) i * (sorted.length - 1) / numStates;
+            int lower = (int) position;
+            int upper = Math.min(lower + 1, sorted.length - 1);
+            edges[i] = sorted[lower] + (position - lower) * (sorted[upper] - sorted[lower]);
+        }
+        return new BinDiscretizer(edges);
+    }
+
+    /**
+    * Equal-width bins spanning $sigmas standard deviations either side of the
+    * mean change, with the outer bins stretched to the largest observed moves.
+    *
+    * @param changes observed percent changes
+    * @param numStates
+    * @param sigmas
+    * @return BinDiscretizer with volatility-scaled edges
+    */
+    public static BinDiscretizer volatilityScaled(double[] changes, int numStates, double sigmas){
+        if (changes.length == 0){
+            throw new IllegalArgumentException("No changes to scale bins by");
+        }
+        double mean = 0;
+        double m2 = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < changes.length; i++){
+            double delta = changes[i] - mean;
+            mean += delta / (i + 1);
+            m2 += delta * (changes[i] - mean);
+            min = Math.min(min, changes[i]);
+            max = Math.max(max, changes[i]);
+        }
+        double spread = sigmas * Math.sqrt(m2 / Math.max(changes.length - 1, 1));
+        double[] edges = new double[numStates + 1];
+        for (int i = 0; i <= numStates; i++){
+            edges[i] = mean - spread + 2 * spread * i / numStates;
+        }
+        edges[0] = Math.min(edges[0], min);
+        edges[numStates] = Math.max(edges[numStates], max);
+        return new BinDiscretizer(edges);
+    }
+
+    @Override
+    public int getNumStates(){
+        return base.length;
+    }
+
+    @Override
+    public int classify(double change){
+        int low = 0;
+        int high = base.length - 1;
+        while (low < high){
+            int middle = (low + high + 1) >>> 1;
+            if (edges[middle] <= change){
+                low = middle;
+            }
+            else{
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public double sampleChange(int state, RandomSource random){
+        return base[state] + width[state] * random.nextDouble();
+    }
+
+    @Override
+    public double getBase(int state){
+        return base[state];
+    }
+
+    @Override
+    public double getWidth(int state){
+        return width[state];
+    }
+
+    @Override
+    public boolean drawsChange(int state){
+        return true;
+    }
+
+    @Override
+    public double getMaxChange(){
+        return maxChange;
+    }
+
+    public double[] getEdges(){
+        return edges.clone();
+    }
+}
@@ -0,0 +1,255 @@
+package markovstock;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+* ParameterStore kept in a compact binary file of length-prefixed records,
+* with an in-memory index from (symbol, estimation date) to record offset. The
+* file is scanned once when opened; after that a lookup is a hash probe and a
+* single positional read, and storing an existing key overwrites its record
+* in place.
+*/
+public class BinaryParameterStore implements ParameterStore, Closeable {
+    private final File path;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private final Map<String, TreeMap<Long, Entry>> index = new HashMap<String, TreeMap<Long, Entry>>();
+    private long deadBytes;
+
+    /**
+    * Constructor opening (or creating) the store file and indexing its records.
+    *
+    * @param path
+    * @throws IOException
+    */
+    public BinaryParameterStore(File path) throws IOException{
+        this.path = path;
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+        buildIndex();
+    }
+
+    /**
+    * Indexes every complete record; a record cut short by an interrupted write
+    * is dropped from the end of the file.
+    */
+    private void buildIndex() throws IOException{
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(path)));
+        long offset = 0;
+        try{
+            while (true){
+                int length;
+                String sym;
+                long epochDay;
+                try{
+                    length = input.readInt();
+                    byte[] symbolBytes = new byte[input.readUnsignedShort()];
+                    input.readFully(symbolBytes);
+                    sym = new String(symbolBytes, StandardCharsets.UTF_8);
+                    epochDay = input.readLong();
+                    int remaining = length - 2 - symbolBytes.length - 8;
+                    if (input.skipBytes(remaining) != remaining){
+                        break;
+                    }
+                }
+                catch (EOFException e){
+                    break;
+                }
+                index(sym, epochDay, new Entry(offset, length));
+                offset += 4 + length;
+            }
+        }
+        finally{
+            input.close();
+        }
+        if (offset < channel.size()){
+            channel.truncate(offset);
+        }
+    }
+
+    private void index(String sym, long epochDay, Entry entry){
+        TreeMap<Long, Entry> dates = index.get(sym);
+        if (dates == null){
+            dates = new TreeMap<Long, Entry>();
+            index.put(sym, dates);
+        }
+        Entry previous = dates.put(epochDay, entry);
+        if (previous != null && previous.offset != entry.offset){
+            deadBytes += 4 + previous.length;
+        }
+    }
+
+    @Override
+    public synchronized void put(String sym, LocalDate estimationDate, double averageChange, double[][] transitions) throws IOException{
+        String key = sym.toUpperCase();
+        long epochDay = estimationDate.toEpochDay();
+        ByteBuffer record = encode(key, epochDay, averageChange, transitions);
+        int length = record.remaining() - 4;
+        TreeMap<Long, Entry> dates = index.get(key);
+        Entry existing = dates == null ? null : dates.get(epochDay);
+        long offset = (existing != null && existing.length == length) ? existing.offset : channel.size();
+        while (record.hasRemaining()){
+            channel.write(record, offset + record.position());
+        }
+        index(key, epochDay, new Entry(offset, length));
+    }
+
+    @Override
+    public synchronized MarkovChain load(String sym) throws IOException{
+        TreeMap<Long, Entry> dates = index.get(sym.toUpperCase());
+        if (dates == null || dates.isEmpty()){
+            return null;
+        }
+        return read(dates.lastEntry().getValue());
+    }
+
+    @Override
+    public synchronized MarkovChain load(String sym, LocalDate estimationDate) throws IOException{
+        TreeMap<Long, Entry> dates = index.get(sym.toUpperCase());
+        Entry entry = dates == null ? null : dates.get(estimationDate.toEpochDay());
+        return entry == null ? null : read(entry);
+    }
+
+    /**
+    * Rewrites the file without records that were superseded by a put of a
+    * different size. The live records are written to a temporary file next to
+    * the store, forced to disk and moved over the store atomically, so a crash
+    * or error part way leaves either the old file or the compacted one.
+    *
+    * @throws IOException
+    */
+    public synchronized void compact() throws IOException{
+        if (deadBytes == 0){
+            return;
+        }
+        File temp = File.createTempFile(path.getName(), ".compact", path.getAbsoluteFile().getParentFile());
+        Map<String, TreeMap<Long, Entry>> compacted = new HashMap<String, TreeMap<Long, Entry>>();
+        try{
+            FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            try{
+                long offset = 0;
+                for (Map.Entry<String, TreeMap<Long, Entry>> dates: index.entrySet()){
+                    TreeMap<Long, Entry> entries = new TreeMap<Long, Entry>();
+                    for (Map.Entry<Long, Entry> date: dates.getValue().entrySet()){
+                        Entry entry = date.getValue();
+                        ByteBuffer record = ByteBuffer.allocate(4 + entry.length);
+                        while (record.hasRemaining()){
+                            if (channel.read(record, entry.offset + record.position()) < 0){
+                                throw new EOFException("Truncated parameter record at " + entry.offset);
+                            }
+                        }
+                        record.flip();
+                        while (record.hasRemaining()){
+                            out.write(record, offset + record.position());
+                        }
+                        entries.put(date.getKey(), new Entry(offset, entry.length));
+                        offset += 4 + entry.length;
+                    }
+                    compacted.put(dates.getKey(), entries);
+                }
+                out.force(true);
+            }
+            finally{
+                out.close();
+            }
+            channel.close();
+            file.close();
+            boolean moved = false;
+            try{
+                Files.move(temp.toPath(), path.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                moved = true;
+            }
+            finally{
+                if (moved){
+                    index.clear();
+                    index.putAll(compacted);
+                    deadBytes = 0;
+                }
+                file = new RandomAccessFile(path, "rw");
+                channel = file.getChannel();
+            }
+        }
+        catch (IOException | RuntimeException e){
+            if (!temp.delete() && temp.exists()){
+                temp.deleteOnExit();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException{
+        channel.force(true);
+        channel.close();
+        file.close();
+    }
+
+    private MarkovChain read(Entry entry) throws IOException{
+        ByteBuffer record = ByteBuffer.allocate(entry.length);
+        while (record.hasRemaining()){
+            if (channel.read(record, entry.offset + 4 + record.position()) < 0){
+                throw new EOFException("Truncated parameter record at " + entry.offset);
+            }
+        }
+        record.flip();
+        byte[] symbolBytes = new byte[record.getShort() & 0xFFFF];
+        record.get(symbolBytes);
+        record.getLong();
+        double averageChange = record.getDouble();
+        int numStates = record.getInt();
+        double[][] transitions = new double[numStates][numStates];
+        for (int i = 0; i < numStates; i++){
+            for (int j = 0; j < numStates; j++){
+                transitions[i][j] = record.getDouble();
+            }
+        }
+        return new MarkovChain(new String(symbolBytes, StandardCharsets.UTF_8), averageChange, transitions);
+    }
+
+    private static ByteBuffer encode(String sym, long epochDay, double averageChange, double[][] transitions){
+        byte[] symbolBytes = sym.getBytes(StandardCharsets.UTF_8);
+        int numStates = transitions.length;
+        int length = 2 + symbolBytes.length + 8 + 8 + 4 + 8 * numStates * numStates;
+        ByteBuffer record = ByteBuffer.allocate(4 + length);
+        record.putInt(length);
+        record.putShort((short) symbolBytes.length);
+        record.put(symbolBytes);
+        record.putLong(epochDay);
+        record.putDouble(averageChange);
+        record.putInt(numStates);
+        for (int i = 0; i < numStates; i++){
+            for (int j = 0; j < numStates; j++){
+                record.putDouble(transitions[i][j]);
+            }
+        }
+        record.flip();
+        return record;
+    }
+
+    private static class Entry {
+        private final long offset;
+        private final int length;
+
+        private Entry(long offset, int length){
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
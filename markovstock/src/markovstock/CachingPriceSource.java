@@ -0,0 +1,99 @@
+package markovstock;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+* Keeps quotes of another PriceSource for a fixed time. Concurrent requests
+* for a symbol that is missing or expired share a single fetch: the first
+* caller installs the fetch and runs it, the others wait for its result.
+* Failed fetches are not cached, so the next request tries again.
+*/
+public class CachingPriceSource implements PriceSource {
+    private final PriceSource source;
+    private final long ttlNanos;
+    private final ConcurrentMap<String, Quote> quotes = new ConcurrentHashMap<String, Quote>();
+
+    private static class Quote {
+        private final FutureTask<Double> fetch;
+        private volatile long expiry = Long.MAX_VALUE;
+
+        Quote(FutureTask<Double> fetch){
+            this.fetch = fetch;
+        }
+
+        boolean isExpired(long now){
+            return now - expiry >= 0;
+        }
+    }
+
+    /**
+    * Constructor with the source to cache and how long quotes stay fresh.
+    *
+    * @param source
+    * @param ttl
+    * @param unit
+    */
+    public CachingPriceSource(PriceSource source, long ttl, TimeUnit unit){
+        this.source = source;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    @Override
+    public double getPrice(final String symbol) throws IOException{
+        String key = symbol.toUpperCase();
+        while (true){
+            Quote quote = quotes.get(key);
+            if (quote != null && !quote.isExpired(System.nanoTime())){
+                return await(key, quote);
+            }
+            Quote fresh = new Quote(new FutureTask<Double>(new Callable<Double>(){
+                @Override
+                public Double call() throws IOException{
+                    return source.getPrice(symbol);
+                }
+            }));
+            boolean installed = quote == null ? quotes.putIfAbsent(key, fresh) == null : quotes.replace(key, quote, fresh);
+            if (installed){
+                fresh.fetch.run();
+                fresh.expiry = System.nanoTime() + ttlNanos;
+                return await(key, fresh);
+            }
+        }
+    }
+
+    private double await(String key, Quote quote) throws IOException{
+        try{
+            return quote.fetch.get();
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for price of " + key, e);
+        }
+        catch (ExecutionException e){
+            quotes.remove(key, quote);
+            if (e.getCause() instanceof IOException){
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not get price of " + key, e.getCause());
+        }
+    }
+
+    /**
+    * Drops the cached quote of $symbol, so the next request fetches it.
+    *
+    * @param symbol
+    */
+    public void invalidate(String symbol){
+        quotes.remove(symbol.toUpperCase());
+    }
+
+    public void clear(){
+        quotes.clear();
+    }
+}
@@ -0,0 +1,252 @@
+package markovstock;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.DecompositionSolver;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+* Long-run behaviour of a chain: stationary distribution, how many days
+* predictXDays needs to converge to it, and expected hitting times between
+* states. Rows are normalized with SamplingTable.normalizeRows, giving the
+* same matrix predictXDays powers and random walks follow, so a state never
+* observed in the data moves uniformly. Every result is computed on first use
+* and cached.
+*/
+public class ChainAnalytics {
+    private static final double POWER_TOLERANCE = 1e-12;
+    private static final int MAX_POWER_ITERATIONS = 1000000;
+    private static final int MAX_CONVERGENCE_DAYS = 100000;
+
+    private final double[][] transitions;
+    private final int numStates;
+    private double[] stationary;
+    private double[][] hittingTimes;
+    private final Map<Double, Integer> convergenceDays = new HashMap<Double, Integer>();
+
+    /**
+    * Constructor with transition matrix given; the matrix is copied.
+    *
+    * @param transitionMatrix
+    */
+    public ChainAnalytics(double[][] transitionMatrix){
+        this.numStates = transitionMatrix.length;
+        this.transitions = SamplingTable.normalizeRows(transitionMatrix);
+    }
+
+    /**
+    * Long-run probability of each state, from a direct linear solve of
+    * pi P = pi with sum(pi) = 1. Chains without a unique solution fall back to
+    * power iteration from the uniform distribution.
+    *
+    * @return double[] representing stationary distribution
+    */
+    public synchronized double[] stationaryDistribution(){
+        if (stationary == null){
+            stationary = solveStationary();
+        }
+        return stationary.clone();
+    }
+
+    private double[] solveStationary(){
+        RealMatrix system = new Array2DRowRealMatrix(numStates, numStates);
+        for (int i = 0; i < numStates; i++){
+            for (int j = 0; j < numStates; j++){
+                system.setEntry(i, j, transitions[j][i] - (i == j ? 1 : 0));
+            }
+        }
+        for (int j = 0; j < numStates; j++){
+            system.setEntry(numStates - 1, j, 1);
+        }
+        RealVector constants = new ArrayRealVector(numStates);
+        constants.setEntry(numStates - 1, 1);
+        DecompositionSolver solver = new LUDecomposition(system).getSolver();
+        if (solver.isNonSingular()){
+            return solver.solve(constants).toArray();
+        }
+        double[] distribution = new double[numStates];
+        for (int j = 0; j < numStates; j++){
+            distribution[j] = 1.0 / numStates;
+        }
+        for (int iteration = 0; iteration < MAX_POWER_ITERATIONS; iteration++){
+            double[] next = step(distribution);
+            double change = 0;
+            for (int j = 0; j < numStates; j++){
+                change = Math.max(change, Math.abs(next[j] - distribution[j]));
+            }
+            distribution = next;
+            if (change < POWER_TOLERANCE){
+                break;
+            }
+        }
+        return distribution;
+    }
+
+    /**
+    * Smallest number of days after which every entry of the day-n transition
+    * matrix is within $epsilon of the stationary distribution, i.e. after which
+    * predictXDays no longer depends on the starting state.
+    *
+    * @param epsilon
+    * @return int representing days to converge, -1 if not within 100000 days
+    */
+    public synchronized int convergenceDays(double epsilon){
+        Integer cached = convergenceDays.get(epsilon);
+        if (cached != null){
+            return cached;
+        }
+        if (stationary == null){
+            stationary = solveStationary();
+        }
+        int result = -1;
+        double[][] power = transitions;
+        for (int day = 1; day <= MAX_CONVERGENCE_DAYS; day++){
+            if (maxDistance(power) < epsilon){
+                result = day;
+                break;
+            }
+            double[][] next = new double[numStates][];
+            for (int i = 0; i < numStates; i++){
+                next[i] = step(power[i]);
+            }
+            power = next;
+        }
+        convergenceDays.put(epsilon, result);
+        return result;
+    }
+
+    private double maxDistance(double[][] power){
+        double distance = 0;
+        for (int i = 0; i < numStates; i++){
+            for (int j = 0; j < numStates; j++){
+                distance = Math.max(distance, Math.abs(power[i][j] - stationary[j]));
+            }
+        }
+        return distance;
+    }
+
+    /**
+    * Expected number of days to first reach each state. Entry [i][j] is the
+    * expected hitting time of j from i; the diagonal holds expected return
+    * times. Entries are infinite when j is not reached with certainty.
+    *
+    * @return double[][] representing expected hitting times
+    */
+    public synchronized double[][] hittingTimes(){
+        if (hittingTimes == null){
+            hittingTimes = new double[numStates][numStates];
+            for (int target = 0; target < numStates; target++){
+                solveHittingTimes(target);
+            }
+        }
+        double[][] copy = new double[numStates][];
+        for (int i = 0; i < numStates; i++){
+            copy[i] = hittingTimes[i].clone();
+        }
+        return copy;
+    }
+
+    private void solveHittingTimes(int target){
+        boolean[] certain = new boolean[numStates];
+        for (int i = 0; i < numStates; i++){
+            certain[i] = i != target && canReach(i, target);
+        }
+        boolean changed = true;
+        while (changed){
+            changed = false;
+            for (int i = 0; i < numStates; i++){
+                if (!certain[i]){
+                    continue;
+                }
+                for (int k = 0; k < numStates; k++){
+                    if (transitions[i][k] > 0 && k != target && !certain[k]){
+                        certain[i] = false;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        int[] index = new int[numStates];
+        int size = 0;
+        for (int i = 0; i < numStates; i++){
+            index[i] = certain[i] ? size++ : -1;
+        }
+        double[] times = new double[numStates];
+        if (size > 0){
+            RealMatrix system = new Array2DRowRealMatrix(size, size);
+            RealVector constants = new ArrayRealVector(size, 1.0);
+            for (int i = 0; i < numStates; i++){
+                if (index[i] < 0){
+                    continue;
+                }
+                system.addToEntry(index[i], index[i], 1);
+                for (int k = 0; k < numStates; k++){
+                    if (index[k] >= 0){
+                        system.addToEntry(index[i], index[k], -transitions[i][k]);
+                    }
+                }
+            }
+            double[] solution = new LUDecomposition(system).getSolver().solve(constants).toArray();
+            for (int i = 0; i < numStates; i++){
+                if (index[i] >= 0){
+                    times[i] = solution[index[i]];
+                }
+            }
+        }
+        for (int i = 0; i < numStates; i++){
+            if (i != target && index[i] < 0){
+                times[i] = Double.POSITIVE_INFINITY;
+            }
+        }
+        double returnTime = 1;
+        for (int k = 0; k < numStates; k++){
+            if (k != target && transitions[target][k] > 0){
+                returnTime += transitions[target][k] * times[k];
+            }
+        }
+        times[target] = returnTime;
+        for (int i = 0; i < numStates; i++){
+            hittingTimes[i][target] = times[i];
+        }
+    }
+
+    private boolean canReach(int from, int target){
+        boolean[] visited = new boolean[numStates];
+        int[] stack = new int[numStates];
+        int top = 0;
+        stack[top++] = from;
+        visited[from] = true;
+        while (top > 0){
+            int state = stack[--top];
+            for (int k = 0; k < numStates; k++){
+                if (transitions[state][k] > 0 && !visited[k]){
+                    if (k == target){
+                        return true;
+                    }
+                    visited[k] = true;
+                    stack[top++] = k;
+                }
+            }
+        }
+        return false;
+    }
+
+    private double[] step(double[] distribution){
+        double[] next = new double[numStates];
+        for (int i = 0; i < numStates; i++){
+            double weight = distribution[i];
+            if (weight == 0){
+                continue;
+            }
+            for (int j = 0; j < numStates; j++){
+                next[j] += weight * transitions[i][j];
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,128 @@
+package markovstock;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+* Bounded, thread-safe cache of loaded chains keyed by symbol. A cached chain
+* keeps its derived artifacts (sampling tables, matrix powers, analytics), so
+* repeated queries on the same ticker skip both the parameter store and the
+* recomputation. Entries are evicted least recently used first or after a
+* time-to-live, and invalidated when a symbol is re-estimated.
+*/
+public class ChainCache {
+    private static final int DEFAULT_MAX_SIZE = 256;
+    private static final long DEFAULT_TTL_MILLIS = 60 * 60 * 1000L;
+    private static ChainCache defaultCache;
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<String, CachedChain> entries;
+    private long generation;
+
+    /**
+    * Constructor with all values given.
+    *
+    * @param maxSize maximum number of cached chains
+    * @param ttlMillis how long a chain stays cached after loading, 0 for no limit
+    */
+    public ChainCache(int maxSize, long ttlMillis){
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, CachedChain>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedChain> eldest){
+                return size() > ChainCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+    * Returns the cache shared by the application.
+    *
+    * @return ChainCache with default size and time-to-live
+    */
+    public static synchronized ChainCache getDefault(){
+        if (defaultCache == null){
+            defaultCache = new ChainCache(DEFAULT_MAX_SIZE, DEFAULT_TTL_MILLIS);
+        }
+        return defaultCache;
+    }
+
+    /**
+    * Returns the cached chain of $sym, loading it from the default parameter
+    * store on a miss. A load that races with an invalidation is returned but
+    * not cached, so stale parameters never replace fresh ones.
+    *
+    * @param sym
+    * @return MarkovChain for $sym
+    * @throws IOException
+    */
+    public MarkovChain get(String sym) throws IOException{
+        String key = sym.toUpperCase();
+        long loadGeneration;
+        synchronized (this){
+            CachedChain entry = entries.get(key);
+            if (entry != null && !isExpired(entry)){
+                return entry.chain;
+            }
+            entries.remove(key);
+            loadGeneration = generation;
+        }
+        MarkovChain chain = ParameterStores.getDefault().load(key);
+        if (chain == null){
+            throw new FileNotFoundException("No parameters stored for " + sym);
+        }
+        synchronized (this){
+            if (generation == loadGeneration){
+                entries.put(key, new CachedChain(chain, System.currentTimeMillis()));
+            }
+        }
+        return chain;
+    }
+
+    /**
+    * Caches a chain under its symbol, replacing any previous one.
+    *
+    * @param chain
+    */
+    public synchronized void put(MarkovChain chain){
+        generation++;
+        entries.put(chain.getSymbol(), new CachedChain(chain, System.currentTimeMillis()));
+    }
+
+    /**
+    * Drops the cached chain of $sym, e.g. after its parameters were re-estimated.
+    *
+    * @param sym
+    */
+    public synchronized void invalidate(String sym){
+        generation++;
+        entries.remove(sym.toUpperCase());
+    }
+
+    public synchronized void clear(){
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    private boolean isExpired(CachedChain entry){
+        return ttlMillis > 0 && System.currentTimeMillis() - entry.loadedAt > ttlMillis;
+    }
+
+    private static class CachedChain {
+        private final MarkovChain chain;
+        private final long loadedAt;
+
+        private CachedChain(MarkovChain chain, long loadedAt){
+            this.chain = chain;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package markovstock;
+
+/**
+* Anything that turns a stream of closing prices into the parameters of a
+* five-state MarkovChain: ParameterEstimator refits every move exactly,
+* OnlineEstimator keeps a sliding window or decayed counts in O(1) per move.
+*/
+public interface ChainEstimator {
+    /**
+    * Adds the next closing price of the series.
+    *
+    * @param close
+    */
+    void add(double close);
+
+    /**
+    * Average absolute percent change the moves are classified against.
+    *
+    * @return double representing average change
+    */
+    double getAverageChange();
+
+    /**
+    * Row-normalized transition counts; rows never entered are zero.
+    *
+    * @return double[][] representing transition matrix
+    */
+    double[][] getTransitionMatrix();
+}
@@ -0,0 +1,208 @@
+package markovstock;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+* Streams paths to a compact columnar binary file, optionally gzipped. Paths
+* are collected into row groups; each group is written day by day, so the
+* prices of one day across all paths in the group are contiguous, which is
+* what per-day statistics and fan charts read. All values are little-endian.
+*
+* File: int magic, int version, int numDays, int rowGroupSize, double
+* startingPrice, then row groups of int count, count int simulation numbers
+* and numDays columns of count doubles, ended by a group of count 0.
+*/
+public class ColumnarPathWriter implements PathWriter {
+    static final int MAGIC = 0x4D4B5643;
+    static final int VERSION = 1;
+    private static final int MAX_ROW_GROUP_SIZE = 4096;
+    private static final int MAX_ROW_GROUP_BYTES = 8 << 20;
+
+    private final OutputStream out;
+    private final int numDays;
+    private final int rowGroupSize;
+    private final int[] sims;
+    private final double[] values;
+    private final ByteBuffer buffer;
+    private int groupCount;
+    private long pathsWritten;
+
+    /**
+    * Constructor creating (or truncating) $file and writing the header.
+    *
+    * @param file
+    * @param numDays
+    * @param startingPrice
+    * @param gzip whether to gzip the output
+    * @throws IOException
+    */
+    public ColumnarPathWriter(File file, int numDays, double startingPrice, boolean gzip) throws IOException{
+        this.numDays = numDays;
+        this.rowGroupSize = rowGroupSize(numDays);
+        this.sims = new int[rowGroupSize];
+        this.values = new double[rowGroupSize * numDays];
+        this.buffer = ByteBuffer.allocate(4 + rowGroupSize * (4 + 8 * numDays)).order(ByteOrder.LITTLE_ENDIAN);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream stream = Channels.newOutputStream(channel);
+        if (gzip){
+            stream = new GZIPOutputStream(stream, 1 << 16);
+        }
+        this.out = new BufferedOutputStream(stream, 1 << 16);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(numDays);
+        buffer.putInt(rowGroupSize);
+        buffer.putDouble(startingPrice);
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+
+    /**
+    * Paths per row group: up to 4096, fewer for long horizons so a group and
+    * its write buffer each stay within 8 MB whatever the number of days.
+    */
+    private static int rowGroupSize(int numDays){
+        long pathBytes = 4 + 8L * numDays;
+        if (pathBytes > Integer.MAX_VALUE - 4){
+            throw new IllegalArgumentException("Too many days for a columnar file: " + numDays);
+        }
+        return (int) Math.max(1, Math.min(MAX_ROW_GROUP_SIZE, MAX_ROW_GROUP_BYTES / pathBytes));
+    }
+
+    @Override
+    public synchronized void accept(int sim, double[] path){
+        if (path.length != numDays){
+            throw new IllegalArgumentException("Expected " + numDays + " days but got " + path.length);
+        }
+        sims[groupCount] = sim;
+        for (int day = 0; day < numDays; day++){
+            values[day * rowGroupSize + groupCount] = path[day];
+        }
+        groupCount++;
+        pathsWritten++;
+        if (groupCount == rowGroupSize){
+            try{
+                writeGroup();
+            }
+            catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void writeGroup() throws IOException{
+        buffer.clear();
+        buffer.putInt(groupCount);
+        for (int k = 0; k < groupCount; k++){
+            buffer.putInt(sims[k]);
+        }
+        for (int day = 0; day < numDays; day++){
+            int offset = day * rowGroupSize;
+            for (int k = 0; k < groupCount; k++){
+                buffer.putDouble(values[offset + k]);
+            }
+        }
+        out.write(buffer.array(), 0, buffer.position());
+        groupCount = 0;
+    }
+
+    @Override
+    public synchronized long getPathsWritten(){
+        return pathsWritten;
+    }
+
+    @Override
+    public synchronized void close() throws IOException{
+        try{
+            if (groupCount > 0){
+                writeGroup();
+            }
+            writeGroup();
+        }
+        finally{
+            out.close();
+        }
+    }
+
+    /**
+    * Reads every path of a columnar file, gzipped or not.
+    *
+    * @param file
+    * @return double[][] representing one row of prices per simulation, in simulation order
+    * @throws IOException
+    */
+    public static double[][] readAll(File file) throws IOException{
+        InputStream input = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+        try{
+            input.mark(2);
+            int first = input.read();
+            int second = input.read();
+            input.reset();
+            if (first == 0x1f && second == 0x8b){
+                input = new BufferedInputStream(new GZIPInputStream(input, 1 << 16), 1 << 16);
+            }
+            DataInputStream data = new DataInputStream(input);
+            ByteBuffer header = read(data, 24);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION){
+                throw new IOException("Not a columnar path file: " + file);
+            }
+            int numDays = header.getInt();
+            header.getInt();
+            List<double[]> paths = new ArrayList<double[]>();
+            while (true){
+                int count = read(data, 4).getInt();
+                if (count == 0){
+                    break;
+                }
+                ByteBuffer group = read(data, count * (4 + 8 * numDays));
+                int[] groupSims = new int[count];
+                for (int k = 0; k < count; k++){
+                    groupSims[k] = group.getInt();
+                    while (paths.size() <= groupSims[k]){
+                        paths.add(null);
+                    }
+                    paths.set(groupSims[k], new double[numDays]);
+                }
+                for (int day = 0; day < numDays; day++){
+                    for (int k = 0; k < count; k++){
+                        paths.get(groupSims[k])[day] = group.getDouble();
+                    }
+                }
+            }
+            return paths.toArray(new double[paths.size()][]);
+        }
+        finally{
+            input.close();
+        }
+    }
+
+    private static ByteBuffer read(DataInputStream data, int length) throws IOException{
+        byte[] bytes = new byte[length];
+        try{
+            data.readFully(bytes);
+        }
+        catch (EOFException e){
+            throw new IOException("Truncated columnar path file", e);
+        }
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,194 @@
+package markovstock;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+* Streams paths to tab-separated text with the same columns as the database
+* export (ITERATION, DAY1 ... DAYn). Each row is formatted into a per-thread
+* byte buffer with fixed-precision decimal formatting, so no String or
+* String[] is created per value, and whole rows go through one large buffer
+* to a file channel, optionally gzipped. Rows are written in the order paths
+* arrive, which from a parallel run is not simulation order.
+*/
+public class CsvPathWriter implements PathWriter {
+    private static final int DEFAULT_DECIMALS = 6;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static{
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++){
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i-1] * 10;
+        }
+    }
+
+    private final OutputStream out;
+    private final int numDays;
+    private volatile int decimals = DEFAULT_DECIMALS;
+    private long pathsWritten;
+    private final ThreadLocal<byte[]> rowBuffers = new ThreadLocal<byte[]>();
+
+    /**
+    * Constructor creating (or truncating) $file and writing the header row.
+    *
+    * @param file
+    * @param numDays
+    * @param gzip whether to gzip the output
+    * @throws IOException
+    */
+    public CsvPathWriter(File file, int numDays, boolean gzip) throws IOException{
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream stream = Channels.newOutputStream(channel);
+        if (gzip){
+            stream = new GZIPOutputStream(stream, 1 << 16);
+        }
+        this.out = new BufferedOutputStream(stream, BUFFER_SIZE);
+        this.numDays = numDays;
+        StringBuilder header = new StringBuilder("ITERATION");
+        for (int i = 0; i < numDays; i++){
+            header.append("\tDAY").append(i + 1);
+        }
+        header.append('\n');
+        out.write(header.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+    * Sets how many decimals prices are written with (default 6); trailing
+    * zeros are dropped.
+    *
+    * @param decimals
+    */
+    public void setDecimals(int decimals){
+        if (decimals < 0 || decimals > 12){
+            throw new IllegalArgumentException("Decimals must be between 0 and 12: " + decimals);
+        }
+        this.decimals = decimals;
+    }
+
+    @Override
+    public void accept(int sim, double[] path){
+        byte[] row = rowBuffers.get();
+        int capacity = 12 + path.length * 32;
+        if (row == null || row.length < capacity){
+            row = new byte[capacity];
+            rowBuffers.set(row);
+        }
+        int length = formatRow(row, sim + 1, path);
+        try{
+            synchronized (out){
+                out.write(row, 0, length);
+                pathsWritten++;
+            }
+        }
+        catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+    * Writes one row with its own ITERATION number, e.g. when copying rows out
+    * of the database.
+    *
+    * @param iteration
+    * @param path
+    * @throws IOException
+    */
+    public void writeRow(int iteration, double[] path) throws IOException{
+        try{
+            accept(iteration - 1, path);
+        }
+        catch (UncheckedIOException e){
+            throw e.getCause();
+        }
+    }
+
+    private int formatRow(byte[] row, int iteration, double[] path){
+        int position = writeLong(row, 0, iteration);
+        int places = decimals;
+        for (int i = 0; i < path.length; i++){
+            row[position++] = '\t';
+            position = writeDouble(row, position, path[i], places);
+        }
+        row[position++] = '\n';
+        return position;
+    }
+
+    /**
+    * Formats $value rounded to $places decimals, dropping trailing zeros.
+    * Values too large for a scaled long, and NaN or infinities, fall back to
+    * Double.toString.
+    */
+    static int writeDouble(byte[] buffer, int position, double value, int places){
+        double magnitude = Math.abs(value);
+        long scale = POWERS_OF_TEN[places];
+        if (!(magnitude < (double) Long.MAX_VALUE / scale / 10)){
+            byte[] text = Double.toString(value).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(text, 0, buffer, position, text.length);
+            return position + text.length;
+        }
+        long scaled = Math.round(magnitude * scale);
+        if (value < 0 && scaled != 0){
+            buffer[position++] = '-';
+        }
+        position = writeLong(buffer, position, scaled / scale);
+        long fraction = scaled % scale;
+        if (fraction != 0){
+            int digits = places;
+            while (fraction % 10 == 0){
+                fraction /= 10;
+                digits--;
+            }
+            buffer[position++] = '.';
+            for (int d = digits - 1; d >= 0; d--){
+                buffer[position + d] = (byte)('0' + fraction % 10);
+                fraction /= 10;
+            }
+            position += digits;
+        }
+        return position;
+    }
+
+    private static int writeLong(byte[] buffer, int position, long value){
+        if (value == 0){
+            buffer[position] = '0';
+            return position + 1;
+        }
+        int digits = 0;
+        for (long rest = value; rest != 0; rest /= 10){
+            digits++;
+        }
+        for (int d = digits - 1; d >= 0; d--){
+            buffer[position + d] = (byte)('0' + value % 10);
+            value /= 10;
+        }
+        return position + digits;
+    }
+
+    @Override
+    public long getPathsWritten(){
+        synchronized (out){
+            return pathsWritten;
+        }
+    }
+
+    @Override
+    public void close() throws IOException{
+        synchronized (out){
+            out.close();
+        }
+    }
+
+    public int getNumDays(){
+        return numDays;
+    }
+}
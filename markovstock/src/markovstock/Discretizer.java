@@ -0,0 +1,34 @@
+package markovstock;
+
+/**
+* Maps daily percent changes to the states of a chain and draws a percent
+* change back out of a state when a walk takes a step.
+*/
+public interface Discretizer {
+
+    int getNumStates();
+
+    /**
+    * Classifies a percent change as its state.
+    *
+    * @param change
+    * @return int representing state, in [0, getNumStates())
+    */
+    int classify(double change);
+
+    /**
+    * Draws a percent change belonging to $state.
+    *
+    * @param state
+    * @param random
+    * @return double representing percent change
+    */
+    double sampleChange(int state, RandomSource random);
+
+    /**
+    * Largest absolute percent change sampleChange can return.
+    *
+    * @return double representing bound on daily percent change
+    */
+    double getMaxChange();
+}
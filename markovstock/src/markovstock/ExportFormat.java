@@ -0,0 +1,61 @@
+package markovstock;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+* File formats simulations can be exported to: tab-separated text as before,
+* or the columnar binary format of ColumnarPathWriter, each optionally gzipped.
+*/
+public enum ExportFormat {
+    CSV(".csv", false, false),
+    CSV_GZIP(".csv.gz", false, true),
+    COLUMNAR(".columnar", true, false),
+    COLUMNAR_GZIP(".columnar.gz", true, true);
+
+    private final String extension;
+    private final boolean columnar;
+    private final boolean gzip;
+
+    ExportFormat(String extension, boolean columnar, boolean gzip){
+        this.extension = extension;
+        this.columnar = columnar;
+        this.gzip = gzip;
+    }
+
+    public String getExtension(){
+        return extension;
+    }
+
+    /**
+    * Format named by its extension without the leading dot, e.g. csv.gz.
+    *
+    * @param name
+    * @return ExportFormat with that extension
+    */
+    public static ExportFormat forName(String name){
+        for (ExportFormat format: values()){
+            if (format.extension.equals("." + name)){
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown export format " + name);
+    }
+
+    /**
+    * Opens a writer of this format; paths can be handed to it straight from
+    * SimulationEngine.
+    *
+    * @param file
+    * @param numDays
+    * @param startingPrice
+    * @return PathWriter that must be closed to finish the file
+    * @throws IOException
+    */
+    public PathWriter open(File file, int numDays, double startingPrice) throws IOException{
+        if (columnar){
+            return new ColumnarPathWriter(file, numDays, startingPrice, gzip);
+        }
+        return new CsvPathWriter(file, numDays, gzip);
+    }
+}
@@ -0,0 +1,259 @@
+package markovstock;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Comparator;
+import org.jfree.chart.plot.DatasetRenderingOrder;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.XYDifferenceRenderer;
+import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
+import org.jfree.data.time.Day;
+import org.jfree.data.time.RegularTimePeriod;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
+
+/**
+* Collects what a fan chart of a simulation needs while paths are generated:
+* per-day quantiles from SimulationStatistics and a random sample of at most
+* maxPaths whole paths. Nothing else is kept, so the chart costs the same for
+* a hundred simulations as for a million. The sample is the maxPaths
+* simulations with the smallest hash of their number, which does not depend
+* on the order parallel workers deliver paths in, nor on how paths were split
+* between parts given to SimulationEngine.aggregate.
+*/
+public class FanChart implements MergeableSink<FanChart> {
+    public static final int DEFAULT_SAMPLED_PATHS = 50;
+    private static final Color[] BAND_COLORS = {new Color(70, 130, 180, 70), new Color(70, 130, 180, 130)};
+    private static final Color MEDIAN_COLOR = new Color(25, 60, 110);
+    private static final Color PATH_COLOR = new Color(120, 120, 120, 110);
+
+    private final SimulationStatistics statistics;
+    private final int maxPaths;
+    private final long[] sampleKeys;
+    private final int[] sampleSims;
+    private final double[][] samplePaths;
+    private int sampled;
+
+    /**
+    * Constructor with the statistics to fill given.
+    *
+    * @param statistics
+    * @param maxPaths largest number of individual paths drawn
+    */
+    public FanChart(SimulationStatistics statistics, int maxPaths){
+        this.statistics = statistics;
+        this.maxPaths = maxPaths;
+        this.sampleKeys = new long[maxPaths];
+        this.sampleSims = new int[maxPaths];
+        this.samplePaths = new double[maxPaths][];
+    }
+
+    /**
+    * Creates a fan chart covering every price the generator can reach, with
+    * the default quantile levels.
+    *
+    * @param generator
+    * @param numDays
+    * @param startingPrice
+    * @param maxPaths
+    * @return FanChart ready to be given to SimulationEngine
+    */
+    public static FanChart forGenerator(PathGenerator generator, int numDays, double startingPrice, int maxPaths){
+        return new FanChart(SimulationStatistics.forGenerator(generator, numDays, startingPrice), maxPaths);
+    }
+
+    @Override
+    public void accept(int sim, double[] path){
+        statistics.accept(sim, path);
+        if (maxPaths > 0){
+            sample(SimulationEngine.pathSeed(0, sim) >>> 1, sim, path, true);
+        }
+    }
+
+    /**
+    * Empty fan chart with statistics from SimulationStatistics.newPart.
+    *
+    * @return FanChart with no paths
+    */
+    @Override
+    public FanChart newPart(){
+        return new FanChart(statistics.newPart(), maxPaths);
+    }
+
+    /**
+    * Adds the statistics and sampled paths of $part.
+    *
+    * @param part
+    */
+    @Override
+    public void merge(FanChart part){
+        statistics.merge(part.getStatistics());
+        synchronized (part){
+            for (int i = 0; i < part.sampled; i++){
+                sample(part.sampleKeys[i], part.sampleSims[i], part.samplePaths[i], false);
+            }
+        }
+    }
+
+    /**
+    * Keeps the path if its key is among the $maxPaths smallest seen, in a
+    * max-heap on the key so the largest kept key is replaced first. The path
+    * is copied only if kept and $copy is set.
+    */
+    private synchronized void sample(long key, int sim, double[] path, boolean copy){
+        if (sampled < maxPaths){
+            int i = sampled++;
+            while (i > 0 && sampleKeys[(i - 1) / 2] < key){
+                move((i - 1) / 2, i);
+                i = (i - 1) / 2;
+            }
+            put(i, key, sim, copy ? path.clone() : path);
+            return;
+        }
+        if (key >= sampleKeys[0]){
+            return;
+        }
+        int i = 0;
+        while (true){
+            int child = 2 * i + 1;
+            if (child >= sampled){
+                break;
+            }
+            if (child + 1 < sampled && sampleKeys[child + 1] > sampleKeys[child]){
+                child++;
+            }
+            if (sampleKeys[child] <= key){
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        put(i, key, sim, copy ? path.clone() : path);
+    }
+
+    private void move(int from, int to){
+        sampleKeys[to] = sampleKeys[from];
+        sampleSims[to] = sampleSims[from];
+        samplePaths[to] = samplePaths[from];
+    }
+
+    private void put(int i, long key, int sim, double[] path){
+        sampleKeys[i] = key;
+        sampleSims[i] = sim;
+        samplePaths[i] = path;
+    }
+
+    public SimulationStatistics getStatistics(){
+        return statistics;
+    }
+
+    /**
+    * Simulation numbers of the sampled paths, ascending.
+    *
+    * @return int[] representing sampled simulations
+    */
+    public synchronized int[] getSampledSims(){
+        int[] sims = Arrays.copyOf(sampleSims, sampled);
+        Arrays.sort(sims);
+        return sims;
+    }
+
+    /**
+    * Sampled paths in order of their simulation number.
+    *
+    * @return double[][] representing one row of prices per sampled path
+    */
+    public synchronized double[][] getSampledPaths(){
+        Integer[] order = new Integer[sampled];
+        for (int i = 0; i < sampled; i++){
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>(){
+            @Override
+            public int compare(Integer a, Integer b){
+                return Integer.compare(sampleSims[a], sampleSims[b]);
+            }
+        });
+        double[][] paths = new double[sampled][];
+        for (int i = 0; i < sampled; i++){
+            paths[i] = samplePaths[order[i]];
+        }
+        return paths;
+    }
+
+    /**
+    * Replaces the datasets of $plot with the fan: one shaded band per pair of
+    * quantile levels (5-95% and 25-75% by default), the median line and the
+    * sampled paths, each starting from the starting price today. Must be
+    * called on the event dispatch thread.
+    *
+    * @param plot
+    */
+    public void render(XYPlot plot){
+        long timer = Metrics.start();
+        double[] levels = statistics.getLevels();
+        int numBands = levels.length / 2;
+        for (int i = plot.getDatasetCount() - 1; i >= 0; i--){
+            plot.setDataset(i, null);
+        }
+        plot.setDatasetRenderingOrder(DatasetRenderingOrder.REVERSE);
+        int index = 0;
+        if (levels.length % 2 == 1){
+            TimeSeriesCollection median = new TimeSeriesCollection();
+            median.addSeries(quantileSeries(numBands));
+            XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer(true, false);
+            renderer.setSeriesPaint(0, MEDIAN_COLOR);
+            renderer.setSeriesStroke(0, new BasicStroke(2.0f));
+            plot.setDataset(index, median);
+            plot.setRenderer(index++, renderer);
+        }
+        double[][] paths = getSampledPaths();
+        if (paths.length > 0){
+            TimeSeriesCollection sampledPaths = new TimeSeriesCollection();
+            int[] sims = getSampledSims();
+            for (int i = 0; i < paths.length; i++){
+                sampledPaths.addSeries(pathSeries("Sim" + (sims[i] + 1), paths[i]));
+            }
+            XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer(true, false);
+            for (int i = 0; i < paths.length; i++){
+                renderer.setSeriesPaint(i, PATH_COLOR);
+                renderer.setSeriesStroke(i, new BasicStroke(0.5f));
+            }
+            plot.setDataset(index, sampledPaths);
+            plot.setRenderer(index++, renderer);
+        }
+        for (int band = numBands - 1; band >= 0; band--){
+            TimeSeriesCollection bounds = new TimeSeriesCollection();
+            bounds.addSeries(quantileSeries(levels.length - 1 - band));
+            bounds.addSeries(quantileSeries(band));
+            Color color = BAND_COLORS[Math.min(band, BAND_COLORS.length - 1)];
+            XYDifferenceRenderer renderer = new XYDifferenceRenderer(color, color, false);
+            renderer.setSeriesPaint(0, color);
+            renderer.setSeriesPaint(1, color);
+            plot.setDataset(index, bounds);
+            plot.setRenderer(index++, renderer);
+        }
+        Metrics.stop(Metrics.Phase.EXTRACT, timer);
+    }
+
+    private TimeSeries quantileSeries(int levelIndex){
+        double[] prices = new double[statistics.getNumDays()];
+        for (int day = 0; day < prices.length; day++){
+            prices[day] = statistics.getQuantile(day, levelIndex);
+        }
+        return pathSeries(Math.round(statistics.getLevels()[levelIndex] * 100) + "%", prices);
+    }
+
+    private TimeSeries pathSeries(String name, double[] prices){
+        TimeSeries series = new TimeSeries(name);
+        RegularTimePeriod day = new Day();
+        series.add(day, statistics.getStartingPrice());
+        day = day.next();
+        for (int i = 0; i < prices.length; i++){
+            series.add(day, prices[i]);
+            day = day.next();
+        }
+        return series;
+    }
+}
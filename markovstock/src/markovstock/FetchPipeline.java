@@ -0,0 +1,242 @@
+package markovstock;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+* Refreshes and fits a whole universe of symbols. Fetches are I/O-bound, so
+* every symbol gets its own task (on a virtual thread where the runtime has
+* them, otherwise on a pool as large as the concurrency limit), while a
+* semaphore caps how many requests are in flight and a RateLimiter spaces
+* them out for the source. Each fetched history is handed to a fixed pool of
+* one thread per core for createParameters, with a bounded number of fits
+* queued, so fetching cannot run arbitrarily far ahead of fitting.
+*
+* With a PriceHistoryCache set, fetches only ask for rows after the last
+* cached date and fits read the whole cached history, as refreshRecords does.
+*/
+public class FetchPipeline {
+    private static final int DEFAULT_MAX_CONCURRENT_FETCHES = 32;
+    private static final int QUEUED_FITS_PER_THREAD = 4;
+
+    private final HistorySource source;
+    private int maxConcurrentFetches = DEFAULT_MAX_CONCURRENT_FETCHES;
+    private double requestsPerSecond = 0;
+    private int fitThreads = Runtime.getRuntime().availableProcessors();
+    private PriceHistoryCache cache;
+
+    /**
+    * Outcome for one symbol: its fitted chain, or the error that stopped it.
+    */
+    public static class Result {
+        private final String symbol;
+        private final MarkovChain chain;
+        private final Exception error;
+
+        Result(String symbol, MarkovChain chain, Exception error){
+            this.symbol = symbol;
+            this.chain = chain;
+            this.error = error;
+        }
+
+        public String getSymbol(){
+            return symbol;
+        }
+
+        public MarkovChain getChain(){
+            return chain;
+        }
+
+        public Exception getError(){
+            return error;
+        }
+
+        public boolean isSuccess(){
+            return error == null;
+        }
+    }
+
+    /**
+    * Constructor with the source to fetch from given.
+    *
+    * @param source
+    */
+    public FetchPipeline(HistorySource source){
+        this.source = source;
+    }
+
+    /**
+    * Pipeline refreshing the default history cache from Yahoo Finance.
+    *
+    * @return FetchPipeline with default settings
+    */
+    public static FetchPipeline yahoo(){
+        FetchPipeline pipeline = new FetchPipeline(UrlHistorySource.YAHOO);
+        pipeline.setCache(PriceHistoryCache.getDefault());
+        return pipeline;
+    }
+
+    public void setMaxConcurrentFetches(int maxConcurrentFetches){
+        if (maxConcurrentFetches < 1){
+            throw new IllegalArgumentException("At least one fetch must be allowed: " + maxConcurrentFetches);
+        }
+        this.maxConcurrentFetches = maxConcurrentFetches;
+    }
+
+    /**
+    * Caps requests to the source; zero or less (the default) means no cap.
+    *
+    * @param requestsPerSecond
+    */
+    public void setRequestsPerSecond(double requestsPerSecond){
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    public void setFitThreads(int fitThreads){
+        if (fitThreads < 1){
+            throw new IllegalArgumentException("At least one fit thread is needed: " + fitThreads);
+        }
+        this.fitThreads = fitThreads;
+    }
+
+    /**
+    * Sets the cache to refresh incrementally; null fits straight from the
+    * fetched history.
+    *
+    * @param cache
+    */
+    public void setCache(PriceHistoryCache cache){
+        this.cache = cache;
+    }
+
+    /**
+    * Fetches and fits every symbol, saving parameters and caching chains as
+    * createParameters does. A failure for one symbol does not stop the rest.
+    *
+    * @param symbols
+    * @return Map from symbol to Result, sorted by symbol
+    * @throws InterruptedException
+    */
+    public Map<String, Result> run(Collection<String> symbols) throws InterruptedException{
+        final Map<String, Result> results = new TreeMap<String, Result>();
+        final CountDownLatch done = new CountDownLatch(symbols.size());
+        final Semaphore fetchPermits = new Semaphore(maxConcurrentFetches);
+        final Semaphore fitPermits = new Semaphore(fitThreads * QUEUED_FITS_PER_THREAD);
+        final RateLimiter rateLimiter = new RateLimiter(requestsPerSecond);
+        final ExecutorService fitPool = Executors.newFixedThreadPool(fitThreads, daemonThreads("fit"));
+        ExecutorService fetchPool = newFetchExecutor(maxConcurrentFetches);
+        try{
+            for (final String symbol: symbols){
+                fetchPool.execute(new Runnable(){
+                    @Override
+                    public void run(){
+                        final PriceHistory history;
+                        try{
+                            fetchPermits.acquire();
+                            try{
+                                history = fetch(symbol, rateLimiter);
+                            }
+                            finally{
+                                fetchPermits.release();
+                            }
+                            fitPermits.acquire();
+                        }
+                        catch (IOException | RuntimeException | InterruptedException e){
+                            complete(results, new Result(symbol, null, e), done);
+                            return;
+                        }
+                        fitPool.execute(new Runnable(){
+                            @Override
+                            public void run(){
+                                try{
+                                    complete(results, new Result(symbol, fit(symbol, history), null), done);
+                                }
+                                catch (IOException | RuntimeException e){
+                                    complete(results, new Result(symbol, null, e), done);
+                                }
+                                finally{
+                                    fitPermits.release();
+                                }
+                            }
+                        });
+                    }
+                });
+            }
+            done.await();
+        }
+        finally{
+            fetchPool.shutdownNow();
+            fitPool.shutdownNow();
+        }
+        return results;
+    }
+
+    private static void complete(Map<String, Result> results, Result result, CountDownLatch done){
+        synchronized (results){
+            results.put(result.getSymbol(), result);
+        }
+        done.countDown();
+    }
+
+    /**
+    * Fetches what is missing for $symbol and, with a cache, appends it there.
+    * Returns null when the cache is already up to date.
+    */
+    private PriceHistory fetch(String symbol, RateLimiter rateLimiter) throws IOException, InterruptedException{
+        LocalDate from = null;
+        if (cache != null){
+            LocalDate last = cache.getLastDate(symbol);
+            if (last != null && !last.isBefore(LocalDate.now())){
+                return null;
+            }
+            from = last == null ? null : last.plusDays(1);
+        }
+        rateLimiter.acquire();
+        PriceHistory history = source.fetch(symbol, from);
+        if (cache != null){
+            cache.append(history);
+        }
+        return history;
+    }
+
+    private MarkovChain fit(String symbol, PriceHistory history) throws IOException{
+        ParameterEstimator estimator = cache != null ? cache.estimator(symbol) : history.toEstimator();
+        return ParseData.createParameters(symbol, estimator);
+    }
+
+    /**
+    * One virtual thread per task when running on a JDK that has them, looked
+    * up reflectively so the code still builds for Java 8; otherwise a pool
+    * of $threads platform threads.
+    */
+    static ExecutorService newFetchExecutor(int threads){
+        try{
+            Object executor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return (ExecutorService) executor;
+        }
+        catch (ReflectiveOperationException | RuntimeException e){
+            return Executors.newFixedThreadPool(threads, daemonThreads("fetch"));
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name){
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory(){
+            @Override
+            public Thread newThread(Runnable task){
+                Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package markovstock;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+* Serves history from a directory of <SYMBOL>.csv or <SYMBOL>.csv.gz files in
+* any format PriceHistoryLoader reads, e.g. for offline refits or as a fake
+* of a remote source.
+*/
+public class FileHistorySource implements HistorySource {
+    private final File directory;
+
+    /**
+    * Constructor with the directory holding the files given.
+    *
+    * @param directory
+    */
+    public FileHistorySource(File directory){
+        this.directory = directory;
+    }
+
+    @Override
+    public PriceHistory fetch(String symbol, LocalDate from) throws IOException{
+        PriceHistory history = PriceHistoryLoader.load(fileOf(symbol), symbol);
+        if (from == null){
+            return history;
+        }
+        long first = from.toEpochDay();
+        PriceHistory newer = new PriceHistory(symbol);
+        for (int i = 0; i < history.size(); i++){
+            if (history.getEpochDay(i) >= first){
+                newer.add(history.getEpochDay(i), history.getClose(i));
+            }
+        }
+        return newer;
+    }
+
+    private File fileOf(String symbol) throws FileNotFoundException{
+        for (String name: new String[]{symbol, symbol.toUpperCase(), symbol.toLowerCase()}){
+            for (String extension: new String[]{".csv", ".csv.gz"}){
+                File file = new File(directory, name + extension);
+                if (file.isFile()){
+                    return file;
+                }
+            }
+        }
+        throw new FileNotFoundException("No history file for " + symbol + " in " + directory);
+    }
+
+    public File getDirectory(){
+        return directory;
+    }
+}
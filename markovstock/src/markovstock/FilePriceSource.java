@@ -0,0 +1,69 @@
+package markovstock;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import com.opencsv.CSVReader;
+
+/**
+* Prices read from a local CSV file of SYMBOL,PRICE rows; rows that do not
+* parse, such as a header, are skipped. The file is read again whenever it
+* changes, so it can be updated while the application runs.
+*/
+public class FilePriceSource implements PriceSource {
+    private final File file;
+    private Map<String, Double> prices;
+    private long lastModified;
+
+    /**
+    * Constructor with the price file given.
+    *
+    * @param file
+    */
+    public FilePriceSource(File file){
+        this.file = file;
+    }
+
+    @Override
+    public double getPrice(String symbol) throws IOException{
+        Double price = prices().get(symbol.toUpperCase());
+        if (price == null){
+            throw new FileNotFoundException("No price for " + symbol + " in " + file);
+        }
+        return price;
+    }
+
+    private synchronized Map<String, Double> prices() throws IOException{
+        long modified = file.lastModified();
+        if (prices == null || modified != lastModified){
+            Map<String, Double> read = new HashMap<String, Double>();
+            CSVReader reader = new CSVReader(new FileReader(file));
+            try{
+                for (String[] row = reader.readNext(); row != null; row = reader.readNext()){
+                    if (row.length < 2){
+                        continue;
+                    }
+                    try{
+                        read.put(row[0].trim().toUpperCase(), Double.parseDouble(row[1].trim()));
+                    }
+                    catch (NumberFormatException e){
+                        continue;
+                    }
+                }
+            }
+            finally{
+                reader.close();
+            }
+            prices = read;
+            lastModified = modified;
+        }
+        return prices;
+    }
+
+    public File getFile(){
+        return file;
+    }
+}
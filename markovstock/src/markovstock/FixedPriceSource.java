@@ -0,0 +1,36 @@
+package markovstock;
+
+import java.io.FileNotFoundException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+* Prices held in memory, e.g. set by hand or by a test, so simulations start
+* at a known price without any network access.
+*/
+public class FixedPriceSource implements PriceSource {
+    private final Map<String, Double> prices = new ConcurrentHashMap<String, Double>();
+
+    /**
+    * Sets the price returned for $symbol.
+    *
+    * @param symbol
+    * @param price
+    */
+    public void put(String symbol, double price){
+        prices.put(symbol.toUpperCase(), price);
+    }
+
+    public void remove(String symbol){
+        prices.remove(symbol.toUpperCase());
+    }
+
+    @Override
+    public double getPrice(String symbol) throws FileNotFoundException{
+        Double price = prices.get(symbol.toUpperCase());
+        if (price == null){
+            throw new FileNotFoundException("No price set for " + symbol);
+        }
+        return price;
+    }
+}
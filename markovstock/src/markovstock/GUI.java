@@ -10,7 +10,8 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.ImageIcon;
@@ -32,6 +33,7 @@ import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.ValueAxis;
 import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.XYItemRenderer;
 import org.jfree.data.time.TimeSeriesCollection;
 import org.jfree.ui.RefineryUtilities;
 
@@ -59,6 +61,10 @@ public class GUI extends JFrame implements ActionListener {
 
     private JTabbedPane tabbedContent = new JTabbedPane();
     private TimeSeriesCollection collection = new TimeSeriesCollection();
+    private String[] chartChoices = {"Fan chart", "All paths"};
+    private JComboBox<String> chartMode = new JComboBox<String>(chartChoices);
+    private XYPlot plot;
+    private XYItemRenderer pathRenderer;
 
     public GUI(String title){
         super(title);
@@ -82,12 +88,18 @@ public class GUI extends JFrame implements ActionListener {
         JFreeChart chart = ChartFactory.createTimeSeriesChart(
         "Simulations", "Time", "Price", collection, false, false, false);
         ChartPanel chartPanel = new ChartPanel(chart);
-        XYPlot plot = chart.getXYPlot();
+        plot = chart.getXYPlot();
+        pathRenderer = plot.getRenderer();
         ValueAxis axis = plot.getDomainAxis();
         axis.setAutoRange(true);
         axis = plot.getRangeAxis();
         axis.setAutoRange(true);;
         JPanel tab2 = new JPanel();
+        tab2.setLayout(new BoxLayout(tab2, BoxLayout.Y_AXIS));
+        JPanel tab2sub = new JPanel();
+        tab2sub.add(new JLabel("Chart:"));
+        tab2sub.add(chartMode);
+        tab2.add(tab2sub);
         tab2.add(chartPanel);
 
         JPanel tab3 = new JPanel();
@@ -106,8 +118,14 @@ public class GUI extends JFrame implements ActionListener {
                 "Confim Exit",
                 JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
                 if (response == JOptionPane.YES_OPTION){
-                    File matricesCSV = new File("matrices.csv");
-                    matricesCSV.delete();
+                    try{
+                        ParameterStores.closeDefault();
+                    }
+                    catch (IOException ex){
+                        //do nothing - file is deleted regardless
+                    }
+                    File parameters = new File(ParameterStores.DEFAULT_FILE);
+                    parameters.delete();
                     File database = new File("sims.db");
                     database.delete();
                     System.exit(0);
@@ -123,8 +141,7 @@ public class GUI extends JFrame implements ActionListener {
             if (!companyText.isEmpty()){
                 if (isTextValid(companyText)){
                     try{
-                        ArrayList<String[]> records = ParseData.obtainRecords(companyText);
-                        ParseData.createParameters(companyText, records);
+                        ParseData.createParameters(companyText, ParseData.refreshRecords(companyText));
                         JOptionPane.showMessageDialog(null,	"Data loaded.");
                         status.setText("Status: Information loaded.");
                     }
@@ -158,26 +175,54 @@ public class GUI extends JFrame implements ActionListener {
                         loadingDialog.setSize(300, 100);
                         loadingDialog.setLocationRelativeTo(null);
                         loadingDialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
-                        SwingWorker simWorker = new SwingWorker<Void, Void>(){
+                        final boolean fan = chartMode.getSelectedIndex() == 0;
+                        SwingWorker<FanChart, Void> simWorker = new SwingWorker<FanChart, Void>(){
                             @Override
-                            protected Void doInBackground() throws Exception {
-                                MarkovChain userMC = new MarkovChain(companyText);
+                            protected FanChart doInBackground() throws Exception {
+                                MarkovChain userMC = ChainCache.getDefault().get(companyText);
                                 double currentPrice = userMC.getCurentPrice();
                                 userMC.eraseSimulations();
+                                if (fan){
+                                    FanChart fanChart = FanChart.forGenerator(userMC, numberDays, currentPrice, FanChart.DEFAULT_SAMPLED_PATHS);
+                                    return userMC.doSimulations(numberSims, numberDays, currentPrice, System.nanoTime(), fanChart);
+                                }
                                 userMC.doSimulations(numberSims, numberDays, currentPrice);
                                 userMC.extractSimulations(currentPrice, collection);
-                                status.setText("Status: Simulations plotted.");
                                 return null;
                             }
 
                             @Override
                             protected void done(){
                                 loadingDialog.dispose();
+                                try{
+                                    FanChart fanChart = get();
+                                    if (fanChart != null){
+                                        collection.removeAllSeries();
+                                        fanChart.render(plot);
+                                    }
+                                    else{
+                                        showAllPaths();
+                                    }
+                                    status.setText("Status: Simulations plotted.");
+                                    JOptionPane.showMessageDialog(null,	"Simulations plotted. Check the second tab.");
+                                }
+                                catch (ExecutionException e){
+                                    Throwable cause = e.getCause();
+                                    if (cause instanceof FileNotFoundException || cause instanceof NullPointerException){
+                                        JOptionPane.showMessageDialog(null,	"Load Data before Simulating.");
+                                    }
+                                    else{
+                                        cause.printStackTrace();
+                                        JOptionPane.showMessageDialog(null,	"An error has occurred: " + cause);
+                                    }
+                                }
+                                catch (InterruptedException e){
+                                    Thread.currentThread().interrupt();
+                                }
                             }
                         };
                         simWorker.execute();
                         loadingDialog.setVisible(true);
-                        JOptionPane.showMessageDialog(null,	"Simulations plotted. Check the second tab.");
                     }
                     catch (NullPointerException e){
                         JOptionPane.showMessageDialog(null,	"Load Data before Simulating.");
@@ -200,7 +245,7 @@ public class GUI extends JFrame implements ActionListener {
             if (!companyText.isEmpty()){
                 if (isTextValid(companyText)){
                     try{
-                        MarkovChain userMC = new MarkovChain(companyText);
+                        MarkovChain userMC = ChainCache.getDefault().get(companyText);
                         userMC.exportSimulations();
                         status.setText("Status: Simulations exported.");
                         JOptionPane.showMessageDialog(null,	"Results exported to 'results' folder.");
@@ -225,7 +270,7 @@ public class GUI extends JFrame implements ActionListener {
                 if (isNumValid(numDaysLaterText) && isTextValid(companyText)){
                     int numberDaysLater = Integer.parseInt(numDaysLaterText);
                     try{
-                        MarkovChain userMC = new MarkovChain(companyText);
+                        MarkovChain userMC = ChainCache.getDefault().get(companyText);
                         int initial = startList.getSelectedIndex();
                         int ending = endList.getSelectedIndex();
                         double chance = userMC.predictXDays(initial, ending, numberDaysLater);
@@ -249,6 +294,19 @@ public class GUI extends JFrame implements ActionListener {
         }
     }
 
+    /**
+    * Puts the one-series-per-path collection back as the only dataset after a
+    * fan chart was shown.
+    */
+    private void showAllPaths(){
+        for (int i = plot.getDatasetCount() - 1; i > 0; i--){
+            plot.setDataset(i, null);
+            plot.setRenderer(i, null);
+        }
+        plot.setDataset(0, collection);
+        plot.setRenderer(0, pathRenderer);
+    }
+
     public JPanel[] initializeButtons(){
         JPanel buttonPanelP1 = new JPanel();
         JPanel buttonPanelP2 = new JPanel();
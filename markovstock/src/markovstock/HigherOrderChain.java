@@ -0,0 +1,172 @@
+package markovstock;
+
+import java.util.Arrays;
+
+/**
+* Markov chain of order k over any discretization of daily changes: the
+* state is the last k moves, packed into one history key in base numStates,
+* and transitions to the next move are kept sparse. A history never seen in
+* the fitting data falls back to the overall distribution of moves. With k = 1
+* and a BinDiscretizer this is a first-order chain over quantile or
+* volatility-scaled states.
+*/
+public class HigherOrderChain implements PathGenerator {
+    private final String symbol;
+    private final Discretizer discretizer;
+    private final int order;
+    private final long numHistories;
+    private final SparseTransitions transitions;
+    private volatile RandomSourceFactory randomFactory = SplittableRandomSource.FACTORY;
+
+    /**
+    * Constructor with all values given.
+    *
+    * @param sym
+    * @param discretizer
+    * @param order number of past moves making up the state
+    * @param transitions rows keyed by history key
+    */
+    public HigherOrderChain(String sym, Discretizer discretizer, int order, SparseTransitions transitions){
+        this.symbol = sym.toUpperCase();
+        this.discretizer = discretizer;
+        this.order = order;
+        this.numHistories = historyCount(discretizer.getNumStates(), order);
+        this.transitions = transitions;
+    }
+
+    /**
+    * Fits a chain of order $order on closing prices, oldest first.
+    *
+    * @param sym
+    * @param closes
+    * @param discretizer
+    * @param order
+    * @return HigherOrderChain with estimated transitions
+    */
+    public static HigherOrderChain fit(String sym, double[] closes, Discretizer discretizer, int order){
+        int numStates = discretizer.getNumStates();
+        long numHistories = historyCount(numStates, order);
+        double[] changes = percentChanges(closes);
+        int[] states = new int[changes.length];
+        for (int i = 0; i < changes.length; i++){
+            states[i] = discretizer.classify(changes[i]);
+        }
+        int numCodes = Math.max(states.length - order, 0);
+        if (numCodes == 0){
+            throw new IllegalArgumentException("Need more than " + (order + 1) + " closes to fit order " + order);
+        }
+        long[] codes = new long[numCodes];
+        long history = 0;
+        for (int i = 0; i < order; i++){
+            history = history * numStates + states[i];
+        }
+        for (int i = order; i < states.length; i++){
+            codes[i - order] = history * numStates + states[i];
+            history = (history * numStates + states[i]) % numHistories;
+        }
+        Arrays.sort(codes);
+        return new HigherOrderChain(sym, discretizer, order, new SparseTransitions(numStates, codes, numCodes));
+    }
+
+    /**
+    * Percent changes between consecutive closes.
+    *
+    * @param closes
+    * @return double[] with one entry fewer than $closes
+    */
+    public static double[] percentChanges(double[] closes){
+        double[] changes = new double[Math.max(closes.length - 1, 0)];
+        for (int i = 1; i < closes.length; i++){
+            changes[i-1] = 100.0 * ((closes[i] - closes[i-1]) / closes[i-1]);
+        }
+        return changes;
+    }
+
+    /**
+    * Conducts a random walk. The starting history is drawn from the observed
+    * histories by frequency; each day draws the next move from the current
+    * history's row and a change within that move's state.
+    *
+    * @param days
+    * @param startingPrice
+    * @param random
+    * @return double[] representing $days of random walking
+    */
+    @Override
+    public double[] predict(int days, double startingPrice, RandomSource random){
+        double[] predictions = new double[days];
+        int numStates = discretizer.getNumStates();
+        long history = transitions.getRowKey(transitions.sampleRow(random.nextDouble()));
+        double price = startingPrice;
+        for (int i = 0; i < days; i++){
+            int row = transitions.findRow(history);
+            int state = row >= 0 ? transitions.sample(row, random.nextDouble()) : transitions.sampleMarginal(random.nextDouble());
+            price = price * (1 + discretizer.sampleChange(state, random)/100);
+            predictions[i] = price;
+            history = (history * numStates + state) % numHistories;
+        }
+        return predictions;
+    }
+
+    /**
+    * Probability of moving to $next after the moves in $history, oldest first.
+    *
+    * @param history the last $order states
+    * @param next
+    * @return double representing transition probability
+    */
+    public double getProbability(int[] history, int next){
+        if (history.length != order){
+            throw new IllegalArgumentException("Expected " + order + " past states but got " + history.length);
+        }
+        long key = 0;
+        for (int state: history){
+            key = key * discretizer.getNumStates() + state;
+        }
+        return transitions.getProbability(key, next);
+    }
+
+    private static long historyCount(int numStates, int order){
+        if (order < 1){
+            throw new IllegalArgumentException("Order must be positive: " + order);
+        }
+        long count = 1;
+        for (int i = 0; i < order; i++){
+            if (count > Long.MAX_VALUE / numStates / numStates){
+                throw new IllegalArgumentException(numStates + " states of order " + order + " do not fit a history key");
+            }
+            count *= numStates;
+        }
+        return count;
+    }
+
+    @Override
+    public double getMaxDailyChange(){
+        return discretizer.getMaxChange();
+    }
+
+    @Override
+    public RandomSourceFactory getRandomFactory(){
+        return randomFactory;
+    }
+
+    public void setRandomFactory(RandomSourceFactory randomFactory){
+        this.randomFactory = randomFactory;
+    }
+
+    public String getSymbol(){
+        return symbol;
+    }
+
+    public Discretizer getDiscretizer(){
+        return discretizer;
+    }
+
+    public int getOrder(){
+        return order;
+    }
+
+    public SparseTransitions getTransitions(){
+        return transitions;
+    }
+}
@@ -0,0 +1,22 @@
+package markovstock;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+* Where daily price history comes from: Yahoo Finance, another HTTP endpoint
+* or local files. Implementations must be safe to call from many threads at
+* once, since FetchPipeline fetches many symbols concurrently.
+*/
+public interface HistorySource {
+
+    /**
+    * Fetches the history of $symbol from a date on.
+    *
+    * @param symbol
+    * @param from first date wanted, null for the whole history
+    * @return PriceHistory of the fetched rows, possibly empty
+    * @throws IOException
+    */
+    PriceHistory fetch(String symbol, LocalDate from) throws IOException;
+}
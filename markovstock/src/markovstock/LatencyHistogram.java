@@ -0,0 +1,109 @@
+package markovstock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+* Lock-free histogram of durations in nanoseconds. Buckets are log-linear:
+* every power of two is split into eight equal sub-buckets, so a percentile
+* is reported within 12.5% of the true value with a fixed 512 counters,
+* whatever the range of durations.
+*/
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int NUM_BUCKETS = 512;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+    * Records one duration.
+    *
+    * @param nanos
+    */
+    public void record(long nanos){
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)){
+        }
+    }
+
+    public long getCount(){
+        return count.sum();
+    }
+
+    public long getTotalNanos(){
+        return total.sum();
+    }
+
+    public long getMaxNanos(){
+        return max.get();
+    }
+
+    public double getMeanNanos(){
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    /**
+    * Duration below which a fraction $p of the recorded durations fall, as the
+    * upper edge of its bucket.
+    *
+    * @param p
+    * @return long representing nanoseconds, 0 if nothing was recorded
+    */
+    public long getPercentileNanos(double p){
+        long n = 0;
+        long[] snapshot = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++){
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0){
+            return 0;
+        }
+        long rank = (long) Math.ceil(p * n);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++){
+            seen += snapshot[i];
+            if (seen >= Math.max(rank, 1)){
+                return Math.min(upperEdge(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset(){
+        for (int i = 0; i < NUM_BUCKETS; i++){
+            counts.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+
+    private static int bucketOf(long value){
+        if (value < SUB_BUCKETS){
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int)((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long upperEdge(int bucket){
+        if (bucket < SUB_BUCKETS){
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,45 @@
+package markovstock;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+* Normalized layout: one (RUN_ID, SYMBOL, SIM, DAY, PRICE) row per simulated
+* day in table PATHS, so horizons are not bounded by SQLite's column limit and
+* a single day's cross-section can be read through an index.
+*/
+public class LongSimulationLayout implements SimulationLayout {
+    private final long runId;
+    private final String symbol;
+
+    /**
+    * Constructor with all values given.
+    *
+    * @param runId run created through SimulationRuns.createRun
+    * @param sym
+    */
+    public LongSimulationLayout(long runId, String sym){
+        this.runId = runId;
+        this.symbol = sym.toUpperCase();
+    }
+
+    @Override
+    public PreparedStatement prepare(Connection con) throws SQLException{
+        SimulationRuns.createTables(con);
+        return con.prepareStatement("INSERT INTO PATHS (RUN_ID, SYMBOL, SIM, DAY, PRICE) VALUES (?, ?, ?, ?, ?);");
+    }
+
+    @Override
+    public int addPath(PreparedStatement insertion, int sim, double[] path) throws SQLException{
+        insertion.setLong(1, runId);
+        insertion.setString(2, symbol);
+        insertion.setInt(3, sim + 1);
+        for (int j = 0; j < path.length; j++){
+            insertion.setInt(4, j + 1);
+            insertion.setDouble(5, path[j]);
+            insertion.addBatch();
+        }
+        return path.length;
+    }
+}
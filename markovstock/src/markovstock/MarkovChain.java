@@ -1,26 +1,40 @@
 package markovstock;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.DoubleBuffer;
 import java.sql.*;
-import org.apache.commons.math3.linear.MatrixUtils;
-import org.apache.commons.math3.linear.RealMatrix;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import org.jfree.data.time.Day;
 import org.jfree.data.time.RegularTimePeriod;
 import org.jfree.data.time.TimeSeries;
 import org.jfree.data.time.TimeSeriesCollection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
-
-public class MarkovChain {
-    private double[][] transitions;
+
+public class MarkovChain implements PathGenerator {
+    private static final RandomSource THREAD_LOCAL_RANDOM = new RandomSource(){
+        @Override
+        public double nextDouble(){
+            return ThreadLocalRandom.current().nextDouble();
+        }
+    };
+
+    private static final int LONG_LAYOUT_BATCH_SIZE = 100000;
+    private static final int LONG_LAYOUT_CACHE_KB = 65536;
+    private static final Map<String, Integer> exportIndexes = new ConcurrentHashMap<String, Integer>();
+
+    private volatile double[][] transitions;
     private double averageChange;
     private String symbol;
+    private volatile Discretizer discretizer;
+    private volatile SamplingTable samplingTable;
+    private volatile MatrixPowers matrixPowers;
+    private volatile ChainAnalytics analytics;
+    private volatile RandomSourceFactory randomFactory = SplittableRandomSource.FACTORY;
 
     /**
     * Constructor with all values given.
@@ -33,42 +47,56 @@ public class MarkovChain {
         this.transitions = transitionMatrix;
         this.averageChange = averageStockChange;
         this.symbol = sym.toUpperCase();
+        this.discretizer = new ThresholdDiscretizer(averageStockChange);
+        this.samplingTable = new SamplingTable(transitionMatrix);
+        this.matrixPowers = new MatrixPowers(transitionMatrix);
+    }
+
+    /**
+    * Constructor for a first-order chain over any discretization of daily
+    * changes, e.g. quantile or volatility-scaled bins; $transitionMatrix has
+    * one row and column per state of $discretizer.
+    *
+    * @param sym
+    * @param discretizer
+    * @param transitionMatrix
+    */
+    public MarkovChain(String sym, Discretizer discretizer, double[][] transitionMatrix){
+        this(sym, discretizer.getMaxChange() / 2, transitionMatrix);
+        if (transitionMatrix.length != discretizer.getNumStates()){
+            throw new IllegalArgumentException("Expected " + discretizer.getNumStates() + " states but got " + transitionMatrix.length);
+        }
+        this.discretizer = discretizer;
     }
 
     /**
-    * Constructor in which values are read from CSV.
+    * Constructor in which values are read from the default parameter store.
     *
     * @param sym
     * @throws IOException
     */
     public MarkovChain(String sym) throws IOException{
-        CSVReader reader = new CSVReader(new FileReader("matrices.csv"), '\t');
-        String[] line;
-        while ((line = reader.readNext()) != null){
-            if (line[0].equals(sym)){
-                break;
-            }
-        }
-        this.symbol = sym.toUpperCase();
-        this.averageChange = Double.valueOf(line[1]);
-        this.transitions = new double[5][5];
-        for (int i = 2; i < line.length; i++){
-            this.transitions[(i-2)/5][(i-2)%5] = Double.valueOf(line[i]);
+        MarkovChain stored = ParameterStores.getDefault().load(sym);
+        if (stored == null){
+            throw new FileNotFoundException("No parameters stored for " + sym);
         }
-        reader.close();
+        this.symbol = stored.symbol;
+        this.averageChange = stored.averageChange;
+        this.discretizer = stored.discretizer;
+        this.transitions = stored.transitions;
+        this.samplingTable = stored.samplingTable;
+        this.matrixPowers = stored.matrixPowers;
     }
 
     /**
-    * Scrape Yahoo Finance to find current (real-time) stock price.
+    * Find current stock price through the shared PriceSource: by default
+    * scraped from Yahoo Finance and cached for a minute.
     *
     * @return double representing stock price
     * @throws IOException
     */
     public double getCurentPrice() throws IOException{
-        Document page = Jsoup.connect("http://finance.yahoo.com/q?s=" + symbol).get();
-        Element priceEle = page.getElementById("yfs_l84_" + symbol.toLowerCase());
-        double price = Double.valueOf(priceEle.text());
-        return price;
+        return PriceSources.getDefault().getPrice(symbol);
     }
 
     /**
@@ -81,34 +109,243 @@ public class MarkovChain {
     * @param startingPrice
     * @throws ClassNotFoundException
     * @throws SQLException
+    * @throws InterruptedException
     */
-    public void doSimulations(int numSims, int numDays, double startingPrice) throws ClassNotFoundException, SQLException{
-        Class.forName("org.sqlite.JDBC");
-        Connection con = DriverManager.getConnection("jdbc:sqlite:sims.db");
-        con.setAutoCommit(true);
-        Statement statement = con.createStatement();
-        String query = "CREATE TABLE IF NOT EXISTS SIMULATION" + symbol + " (" +
-        "ITERATION INT PRIMARY KEY	NOT NULL, ";
-        for (int i = 0; i < numDays; i++){
-            query += "DAY" + (i+1) + " DOUBLE PRECISION	NOT NULL, ";
+    public void doSimulations(int numSims, int numDays, double startingPrice) throws ClassNotFoundException, SQLException, InterruptedException{
+        doSimulations(numSims, numDays, startingPrice, System.nanoTime());
+    }
+
+    /**
+    * Conduct simulations in parallel with a fixed seed, so the same seed always
+    * reproduces the same paths, and stream results to SQLite database in
+    * batched transactions while simulation continues.
+    *
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @param seed
+    * @throws ClassNotFoundException
+    * @throws SQLException
+    * @throws InterruptedException
+    */
+    public void doSimulations(int numSims, int numDays, double startingPrice, long seed) throws ClassNotFoundException, SQLException, InterruptedException{
+        doSimulations(numSims, numDays, startingPrice, seed, new SimulationEngine(this));
+    }
+
+    /**
+    * Conduct seeded simulations into SQLite database as above on a configured
+    * engine, e.g. one sharing a pool with other chains.
+    *
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @param seed
+    * @param engine engine simulating this chain
+    * @throws ClassNotFoundException
+    * @throws SQLException
+    * @throws InterruptedException
+    */
+    public void doSimulations(int numSims, int numDays, double startingPrice, long seed, SimulationEngine engine) throws ClassNotFoundException, SQLException, InterruptedException{
+        long timer = Metrics.start();
+        SimulationWriter writer = new SimulationWriter(symbol, numDays);
+        writer.open();
+        try{
+            engine.run(numSims, numDays, startingPrice, seed, writer);
         }
-        query = query.substring(0, query.length() - 2) + ");";
-        statement.executeUpdate(query);
-        query = "INSERT INTO SIMULATION" + symbol + " VALUES (?, ";
-        for (int i = 0; i < numDays; i++){
-            query += "?, ";
-        }
-        query = query.substring(0, query.length() - 2) + ");";
-        PreparedStatement insertion = con.prepareStatement(query);
-        for (int i = 0; i < numSims; i++){
-            insertion.setInt(1, i+1);
-            double[] predictions = predict(numDays, startingPrice);
-            for (int j = 0; j < predictions.length; j++){
-                insertion.setDouble(j+2, predictions[j]);
+        catch (InterruptedException | RuntimeException | Error e){
+            closeAfterFailure(writer, e);
+            throw e;
+        }
+        finally{
+            Metrics.stop(Metrics.Phase.SIMULATE, timer);
+        }
+        writer.close();
+    }
+
+    /**
+    * Conduct seeded simulations into SQLite database as above, also merging
+    * every path into $result, e.g. a FanChart, so nothing has to be read back
+    * from the database. Paths are aggregated through SimulationEngine.aggregate,
+    * whose parts share only the writer.
+    *
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @param seed
+    * @param result
+    * @return S $result with every path merged in
+    * @throws ClassNotFoundException
+    * @throws SQLException
+    * @throws InterruptedException
+    */
+    public <S extends MergeableSink<S>> S doSimulations(int numSims, int numDays, double startingPrice, long seed, S result) throws ClassNotFoundException, SQLException, InterruptedException{
+        long timer = Metrics.start();
+        SimulationWriter writer = new SimulationWriter(symbol, numDays);
+        writer.open();
+        try{
+            new SimulationEngine(this).aggregate(numSims, numDays, startingPrice, seed, new TeeSink<S>(result, writer));
+        }
+        catch (InterruptedException | RuntimeException | Error e){
+            closeAfterFailure(writer, e);
+            throw e;
+        }
+        finally{
+            Metrics.stop(Metrics.Phase.SIMULATE, timer);
+        }
+        writer.close();
+        return result;
+    }
+
+    /**
+    * Conduct seeded simulations and store them as a new run in the normalized
+    * PATHS table of the SQLite database, keeping earlier runs. If simulating or
+    * writing fails, the run and the paths already written are deleted again,
+    * so every listed run is complete.
+    *
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @param seed
+    * @return long representing id of the stored run
+    * @throws ClassNotFoundException
+    * @throws SQLException
+    * @throws InterruptedException
+    */
+    public long doSimulationRun(int numSims, int numDays, double startingPrice, long seed) throws ClassNotFoundException, SQLException, InterruptedException{
+        return doSimulationRun(numSims, numDays, startingPrice, seed, new SimulationEngine(this));
+    }
+
+    /**
+    * Conduct seeded simulations into a new run as above on a configured engine,
+    * e.g. one sharing a pool with other chains.
+    *
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @param seed
+    * @param engine engine simulating this chain
+    * @return long representing id of the stored run
+    * @throws ClassNotFoundException
+    * @throws SQLException
+    * @throws InterruptedException
+    */
+    public long doSimulationRun(int numSims, int numDays, double startingPrice, long seed, SimulationEngine engine) throws ClassNotFoundException, SQLException, InterruptedException{
+        long timer = Metrics.start();
+        SimulationRuns runs = new SimulationRuns();
+        long runId = runs.createRun(symbol, numSims, numDays, startingPrice, seed);
+        try{
+            SimulationWriter writer = new SimulationWriter(runs.getDatabase(), new LongSimulationLayout(runId, symbol));
+            writer.setBatchSize(LONG_LAYOUT_BATCH_SIZE);
+            writer.setCacheSize(LONG_LAYOUT_CACHE_KB);
+            writer.open();
+            try{
+                engine.run(numSims, numDays, startingPrice, seed, writer);
+            }
+            catch (InterruptedException | RuntimeException | Error e){
+                closeAfterFailure(writer, e);
+                throw e;
             }
-            insertion.executeUpdate();
+            finally{
+                Metrics.stop(Metrics.Phase.SIMULATE, timer);
+            }
+            writer.close();
+        }
+        catch (ClassNotFoundException | SQLException | InterruptedException | RuntimeException | Error e){
+            try{
+                runs.deleteRun(runId);
+            }
+            catch (ClassNotFoundException | SQLException | RuntimeException deletion){
+                e.addSuppressed(deletion);
+            }
+            throw e;
+        }
+        return runId;
+    }
+
+    /**
+    * Conduct seeded simulations straight into a memory-mapped path store
+    * instead of the SQLite database.
+    *
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @param seed
+    * @param storeFile
+    * @return PathStore holding the simulated paths, open for reading
+    * @throws IOException
+    * @throws InterruptedException
+    */
+    public PathStore doSimulations(int numSims, int numDays, double startingPrice, long seed, File storeFile) throws IOException, InterruptedException{
+        long timer = Metrics.start();
+        try{
+            PathStore store = PathStore.create(storeFile, numSims, numDays, startingPrice);
+            try{
+                new SimulationEngine(this).run(numSims, numDays, startingPrice, seed, store);
+                store.flush();
+            }
+            catch (InterruptedException | RuntimeException | Error e){
+                closeAfterFailure(store, e);
+                throw e;
+            }
+            return store;
+        }
+        finally{
+            Metrics.stop(Metrics.Phase.SIMULATE, timer);
+        }
+    }
+
+    /**
+    * Saves simulated paths (one row per path) to SQLite database.
+    *
+    * @param results
+    * @throws ClassNotFoundException
+    * @throws SQLException
+    * @throws InterruptedException
+    */
+    public void saveSimulations(double[][] results) throws ClassNotFoundException, SQLException, InterruptedException{
+        int numDays = results.length > 0 ? results[0].length : 0;
+        SimulationWriter writer = new SimulationWriter(symbol, numDays);
+        writer.open();
+        try{
+            for (int i = 0; i < results.length; i++){
+                writer.accept(i, results[i]);
+            }
+        }
+        catch (RuntimeException | Error e){
+            closeAfterFailure(writer, e);
+            throw e;
+        }
+        writer.close();
+    }
+
+    /**
+    * Closes $writer after the simulation feeding it failed with $failure; a
+    * failure to close is attached to $failure instead of replacing it.
+    */
+    private static void closeAfterFailure(SimulationWriter writer, Throwable failure){
+        try{
+            writer.close();
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            failure.addSuppressed(e);
+        }
+        catch (SQLException | RuntimeException e){
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+    * Closes $closeable after the simulation feeding it failed with $failure,
+    * in the same way.
+    */
+    private static void closeAfterFailure(Closeable closeable, Throwable failure){
+        try{
+            closeable.close();
+        }
+        catch (IOException | RuntimeException e){
+            failure.addSuppressed(e);
         }
-        con.close();
     }
 
     /**
@@ -120,6 +357,7 @@ public class MarkovChain {
     * @throws SQLException
     */
     public void extractSimulations(double currentPrice, TimeSeriesCollection collection) throws ClassNotFoundException, SQLException{
+        long timer = Metrics.start();
         Class.forName("org.sqlite.JDBC");
         Connection con = DriverManager.getConnection("jdbc:sqlite:sims.db");
         Statement stmt = con.createStatement();
@@ -127,6 +365,7 @@ public class MarkovChain {
         collection.removeAllSeries();
         addSimulationsToSeries(currentPrice, results, collection);
         con.close();
+        Metrics.stop(Metrics.Phase.EXTRACT, timer);
     }
 
     /**
@@ -153,7 +392,74 @@ public class MarkovChain {
             }
             collection.addSeries(series);
             day = new Day();
+            Metrics.add(Metrics.Counter.ROWS_READ, 1);
+        }
+    }
+
+    /**
+    * Reads a stored run from the database and adds its paths to JFreeChart chart.
+    *
+    * @param currentPrice
+    * @param runId
+    * @param collection
+    * @throws ClassNotFoundException
+    * @throws SQLException
+    */
+    public void extractSimulationRun(double currentPrice, long runId, TimeSeriesCollection collection) throws ClassNotFoundException, SQLException{
+        long timer = Metrics.start();
+        double[][] paths = new SimulationRuns().readPaths(runId);
+        collection.removeAllSeries();
+        addSimulationsToSeries(currentPrice, paths, collection);
+        Metrics.add(Metrics.Counter.ROWS_READ, paths.length);
+        Metrics.stop(Metrics.Phase.EXTRACT, timer);
+    }
+
+    /**
+    * Converts in-memory paths to JFreeChart's needed format and adds to given
+    * TimeSeriesCollection object.
+    *
+    * @param currentPrice
+    * @param paths
+    * @param collection
+    */
+    public void addSimulationsToSeries(double currentPrice, double[][] paths, TimeSeriesCollection collection){
+        for (int sim = 0; sim < paths.length; sim++){
+            TimeSeries series = new TimeSeries("Sim" + (sim + 1));
+            RegularTimePeriod day = new Day();
+            series.add(day, currentPrice);
+            day = day.next();
+            for (int i = 0; i < paths[sim].length; i++){
+                series.add(day, paths[sim][i]);
+                day = day.next();
+            }
+            collection.addSeries(series);
+        }
+    }
+
+    /**
+    * Adds the paths of a path store to JFreeChart chart.
+    *
+    * @param currentPrice
+    * @param store
+    * @param collection
+    */
+    public void extractSimulations(double currentPrice, PathStore store, TimeSeriesCollection collection){
+        long timer = Metrics.start();
+        collection.removeAllSeries();
+        for (int sim = 0; sim < store.getNumSims(); sim++){
+            DoubleBuffer path = store.path(sim);
+            TimeSeries series = new TimeSeries("Sim" + (sim + 1));
+            RegularTimePeriod day = new Day();
+            series.add(day, currentPrice);
+            day = day.next();
+            while (path.hasRemaining()){
+                series.add(day, path.get());
+                day = day.next();
+            }
+            collection.addSeries(series);
         }
+        Metrics.add(Metrics.Counter.ROWS_READ, store.getNumSims());
+        Metrics.stop(Metrics.Phase.EXTRACT, timer);
     }
 
     /**
@@ -181,33 +487,152 @@ public class MarkovChain {
     * @throws SQLException
     */
     public void exportSimulations() throws IOException, ClassNotFoundException, SQLException{
+        long timer = Metrics.start();
+        Class.forName("org.sqlite.JDBC");
+        Connection con = DriverManager.getConnection("jdbc:sqlite:sims.db");
+        try{
+            Statement stmt = con.createStatement();
+            stmt.setFetchSize(1024);
+            ResultSet results = stmt.executeQuery("SELECT * FROM SIMULATION" + symbol + ";");
+            int numDays = results.getMetaData().getColumnCount() - 1;
+            CsvPathWriter writer = new CsvPathWriter(nextExportFile(ExportFormat.CSV), numDays, false);
+            try{
+                double[] path = new double[numDays];
+                while (results.next()){
+                    for (int i = 0; i < numDays; i++){
+                        path[i] = results.getDouble(i + 2);
+                    }
+                    writer.writeRow(results.getInt(1), path);
+                }
+            }
+            finally{
+                writer.close();
+            }
+            Metrics.add(Metrics.Counter.ROWS_READ, writer.getPathsWritten());
+        }
+        finally{
+            con.close();
+        }
+        Metrics.stop(Metrics.Phase.EXPORT, timer);
+    }
+
+    /**
+    * Exports simulations from a path store into a CSV with the same columns as
+    * the database export.
+    *
+    * @param store
+    * @throws IOException
+    */
+    public void exportSimulations(PathStore store) throws IOException{
+        long timer = Metrics.start();
+        CsvPathWriter writer = new CsvPathWriter(nextExportFile(ExportFormat.CSV), store.getNumDays(), false);
+        try{
+            double[] path = new double[store.getNumDays()];
+            for (int sim = 0; sim < store.getNumSims(); sim++){
+                store.path(sim).get(path);
+                writer.accept(sim, path);
+            }
+        }
+        finally{
+            writer.close();
+        }
+        Metrics.stop(Metrics.Phase.EXPORT, timer);
+    }
+
+    /**
+    * Runs simulations straight into an export file under ./results, without
+    * going through the database. Paths are written as they finish, so rows of
+    * a text export are not in simulation order; columnar files keep the
+    * simulation number of every path.
+    *
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @param seed
+    * @param format
+    * @return File the paths were written to
+    * @throws IOException
+    * @throws InterruptedException
+    */
+    public File exportSimulations(int numSims, int numDays, double startingPrice, long seed, ExportFormat format) throws IOException, InterruptedException{
+        File file = nextExportFile(format);
+        exportSimulations(numSims, numDays, startingPrice, seed, format, file);
+        return file;
+    }
+
+    /**
+    * Runs simulations straight into $file in the given format.
+    *
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @param seed
+    * @param format
+    * @param file
+    * @throws IOException
+    * @throws InterruptedException
+    */
+    public void exportSimulations(int numSims, int numDays, double startingPrice, long seed, ExportFormat format, File file) throws IOException, InterruptedException{
+        exportSimulations(numSims, numDays, startingPrice, seed, format, file, new SimulationEngine(this));
+    }
+
+    /**
+    * Runs simulations straight into $file as above on a configured engine,
+    * e.g. one sharing a pool with other chains.
+    *
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @param seed
+    * @param format
+    * @param file
+    * @param engine engine simulating this chain
+    * @throws IOException
+    * @throws InterruptedException
+    */
+    public void exportSimulations(int numSims, int numDays, double startingPrice, long seed, ExportFormat format, File file, SimulationEngine engine) throws IOException, InterruptedException{
+        long timer = Metrics.start();
+        try{
+            PathWriter writer = format.open(file, numDays, startingPrice);
+            try{
+                engine.run(numSims, numDays, startingPrice, seed, writer);
+            }
+            catch (UncheckedIOException e){
+                closeAfterFailure(writer, e.getCause());
+                throw e.getCause();
+            }
+            catch (InterruptedException | RuntimeException | Error e){
+                closeAfterFailure(writer, e);
+                throw e;
+            }
+            writer.close();
+        }
+        finally{
+            Metrics.stop(Metrics.Phase.EXPORT, timer);
+        }
+    }
+
+    /**
+    * Claims the next free export file for this symbol: table<SYM>, then
+    * table<SYM>1, table<SYM>2 and so on. Files are claimed with
+    * createNewFile, so concurrent exports never share one, and the last index
+    * used is remembered instead of listing the directory every time.
+    */
+    private File nextExportFile(ExportFormat format) throws IOException{
         File resultsDir = new File("./results");
         if (!resultsDir.exists()){
             resultsDir.mkdir();
         }
-        String filePath;
-        if (new File("./results/table" + symbol + ".csv").exists()){
-            File directory = new File("./results/");
-            String[] filesInDir = directory.list();
-            int currNumbering = 0;
-            for (int i = 0; i < filesInDir.length; i++){
-                if (filesInDir[i].startsWith("table" + symbol)){
-                    currNumbering++;
-                }
+        Integer hint = exportIndexes.get(symbol + format.getExtension());
+        int index = hint == null ? 0 : hint;
+        while (true){
+            File file = new File(resultsDir, "table" + symbol + (index == 0 ? "" : String.valueOf(index)) + format.getExtension());
+            if (file.createNewFile()){
+                exportIndexes.put(symbol + format.getExtension(), index + 1);
+                return file;
             }
-            filePath = "./results/table" + symbol + String.valueOf(currNumbering);
-        }
-        else{
-            filePath = "./results/table" + symbol;
+            index++;
         }
-        CSVWriter writer = new CSVWriter(new FileWriter(filePath + ".csv"), '\t', CSVWriter.NO_QUOTE_CHARACTER);
-        Class.forName("org.sqlite.JDBC");
-        Connection con = DriverManager.getConnection("jdbc:sqlite:sims.db");
-        Statement stmt = con.createStatement();
-        ResultSet results = stmt.executeQuery("SELECT * FROM SIMULATION" + symbol + ";");
-        writer.writeAll(results, true, true);
-        writer.close();
-        con.close();
     }
 
     /**
@@ -220,13 +645,40 @@ public class MarkovChain {
     * @return double representing chance of ending at $finalState
     */
     public double predictXDays(int initialState, int finalState, int daysLater){
-        RealMatrix transitionMatrix = MatrixUtils.createRealMatrix(transitions);
-        RealMatrix result = MatrixUtils.createRealMatrix(transitions);
-        for (int i = 0; i < daysLater - 1; i++){
-            result = transitionMatrix.multiply(result);
+        return matrixPowers.power(Math.max(daysLater, 1))[initialState][finalState];
+    }
+
+    /**
+    * Calculates chances of moving between every pair of states in $daysLater days.
+    *
+    * @param daysLater
+    * @return double[][] where entry [i][j] is the chance of going from state i to j
+    */
+    public double[][] predictXDays(int daysLater){
+        double[][] power = matrixPowers.power(Math.max(daysLater, 1));
+        double[][] copy = new double[power.length][];
+        for (int i = 0; i < power.length; i++){
+            copy[i] = power[i].clone();
         }
-        double chance = result.getEntry(initialState, finalState);
-        return chance;
+        return copy;
+    }
+
+    /**
+    * Calculates chance of starting at $initialState and ending at $finalState
+    * for every horizon from 1 to $maxDays days.
+    *
+    * @param initialState
+    * @param finalState
+    * @param maxDays number of days, at least 1
+    * @return double[] where entry d is the chance after d + 1 days
+    */
+    public double[] predictHorizon(int initialState, int finalState, int maxDays){
+        double[][] distributions = matrixPowers.horizon(initialState, maxDays);
+        double[] chances = new double[maxDays];
+        for (int day = 0; day < maxDays; day++){
+            chances[day] = distributions[day][finalState];
+        }
+        return chances;
     }
 
     /**
@@ -238,18 +690,46 @@ public class MarkovChain {
     * @return double[] representing $days of random walking
     */
     public double[] predict(int days, double startingPrice){
+        return predict(days, startingPrice, randomFactory.create(ThreadLocalRandom.current().nextLong()));
+    }
+
+    /**
+    * Conducts a random walk drawing from the given generator, so that concurrent
+    * walks do not contend and a seeded walk can be reproduced.
+    *
+    * @param days
+    * @param startingPrice
+    * @param random
+    * @return double[] representing $days of random walking
+    */
+    @Override
+    public double[] predict(int days, double startingPrice, RandomSource random){
         double[] predictions = new double[days];
-        int begin = (int)(Math.random() * 5);
-        predictions[0] = makeStep(startingPrice, begin);
+        int begin = (int)(random.nextDouble() * samplingTable.getNumStates());
+        predictions[0] = makeStep(startingPrice, begin, random);
         int currentState;
         int pastState = begin;
         for (int i = 1; i < days; i++, pastState = currentState){
-            currentState = makeSelection(pastState);
-            predictions[i] = makeStep(predictions[i-1], currentState);
+            currentState = makeSelection(pastState, random);
+            predictions[i] = makeStep(predictions[i-1], currentState, random);
         }
         return predictions;
     }
 
+    /**
+    * Replays a single simulation of a seeded run, e.g. one produced by
+    * doSimulations(numSims, numDays, startingPrice, seed).
+    *
+    * @param seed
+    * @param sim index of the simulation (ITERATION - 1 in the database)
+    * @param days
+    * @param startingPrice
+    * @return double[] representing the simulation's $days of random walking
+    */
+    public double[] replay(long seed, int sim, int days, double startingPrice){
+        return predict(days, startingPrice, randomFactory.create(SimulationEngine.pathSeed(seed, sim)));
+    }
+
     /**
     * Makes a given step and returns resulting new price.
     *
@@ -258,19 +738,19 @@ public class MarkovChain {
     * @return double representing result of step
     */
     public double makeStep(double currPrice, int transition){
-        double multiplier = 0;
-        if (transition == 0){
-            multiplier = (Math.random() * averageChange);
-        }
-        else if (transition == 1){
-            multiplier = averageChange + (Math.random() * averageChange);
-        }
-        else if (transition == 2){
-            multiplier = -(Math.random() * averageChange);
-        }
-        else if (transition == 3){
-            multiplier = -(averageChange + (Math.random() * averageChange));
-        }
+        return makeStep(currPrice, transition, THREAD_LOCAL_RANDOM);
+    }
+
+    /**
+    * Makes a given step using the given generator and returns resulting new price.
+    *
+    * @param currPrice
+    * @param transition
+    * @param random
+    * @return double representing result of step
+    */
+    public double makeStep(double currPrice, int transition, RandomSource random){
+        double multiplier = discretizer.sampleChange(transition, random);
         return currPrice * (1 + multiplier/100);
     }
 
@@ -281,19 +761,119 @@ public class MarkovChain {
     * @return int representing chosen state
     */
     public int makeSelection(int currState){
-        double[] values = transitions[currState];
-        double[] rouletteWheel = new double[5];
-        rouletteWheel[0] = values[0];
-        for (int i = 1; i < values.length; i++){
-            rouletteWheel[i] = rouletteWheel[i-1] + values[i];
-        }
-        double choice = Math.random();
-        int selection = 0;
-        for (; selection < values.length; selection++){
-            if (choice <= rouletteWheel[selection]){
-                break;
+        return makeSelection(currState, THREAD_LOCAL_RANDOM);
+    }
+
+    /**
+    * Chooses a state based on row's probability distribution using the given generator.
+    *
+    * @param currState
+    * @param random
+    * @return int representing chosen state
+    */
+    public int makeSelection(int currState, RandomSource random){
+        return samplingTable.sample(currState, random.nextDouble());
+    }
+
+    /**
+    * Replaces the transition matrix, rebuilds its sampling tables and matrix
+    * power cache, and drops cached analytics.
+    *
+    * @param transitionMatrix
+    */
+    public void setTransitions(double[][] transitionMatrix){
+        this.transitions = transitionMatrix;
+        this.samplingTable = new SamplingTable(transitionMatrix);
+        this.matrixPowers = new MatrixPowers(transitionMatrix);
+        this.analytics = null;
+    }
+
+    /**
+    * Returns the chain's long-run analytics, created on first use and kept
+    * until the transitions change.
+    *
+    * @return ChainAnalytics for the current transition matrix
+    */
+    public ChainAnalytics getAnalytics(){
+        ChainAnalytics current = analytics;
+        if (current == null){
+            synchronized (this){
+                current = analytics;
+                if (current == null){
+                    current = new ChainAnalytics(transitions);
+                    analytics = current;
+                }
             }
         }
-        return selection;
+        return current;
+    }
+
+    /**
+    * Calculates long-run chance of being in each state.
+    *
+    * @return double[] representing stationary distribution
+    */
+    public double[] stationaryDistribution(){
+        return getAnalytics().stationaryDistribution();
+    }
+
+    /**
+    * Calculates after how many days predictXDays is within $epsilon of the
+    * stationary distribution for every pair of states.
+    *
+    * @param epsilon
+    * @return int representing days to converge, -1 if it does not
+    */
+    public int convergenceDays(double epsilon){
+        return getAnalytics().convergenceDays(epsilon);
+    }
+
+    /**
+    * Calculates expected number of days to first go from each state to each other.
+    *
+    * @return double[][] representing expected hitting times
+    */
+    public double[][] hittingTimes(){
+        return getAnalytics().hittingTimes();
+    }
+
+    public double[][] getTransitions(){
+        return transitions;
+    }
+
+    public double getAverageChange(){
+        return averageChange;
+    }
+
+    public String getSymbol(){
+        return symbol;
+    }
+
+    public Discretizer getDiscretizer(){
+        return discretizer;
+    }
+
+    SamplingTable getSamplingTable(){
+        return samplingTable;
+    }
+
+    @Override
+    public double getMaxDailyChange(){
+        return discretizer.getMaxChange();
+    }
+
+    /**
+    * Sets the generator family used for walks, e.g. SplittableRandomSource.FACTORY
+    * or XoshiroRandom.FACTORY.
+    *
+    * @param randomFactory
+    */
+    public void setRandomFactory(RandomSourceFactory randomFactory){
+        this.randomFactory = randomFactory;
+    }
+
+    @Override
+    public RandomSourceFactory getRandomFactory(){
+        return randomFactory;
     }
 }
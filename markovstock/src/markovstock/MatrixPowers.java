@@ -0,0 +1,131 @@
+package markovstock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+* Powers of a transition matrix computed by repeated squaring, so P^n costs
+* O(log n) multiplications. Squares and recently requested powers are cached
+* for the lifetime of the matrix. Rows are normalized with
+* SamplingTable.normalizeRows first, so the powers describe the chain that
+* random walks actually follow and no probability mass is lost.
+*/
+public class MatrixPowers {
+    private static final int MAX_CACHED_POWERS = 256;
+
+    private final int numStates;
+    private final List<double[][]> squares = new ArrayList<double[][]>();
+    private final Map<Integer, double[][]> powers = new LinkedHashMap<Integer, double[][]>(16, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, double[][]> eldest){
+            return size() > MAX_CACHED_POWERS;
+        }
+    };
+
+    /**
+    * Constructor with transition matrix given; a normalized copy is used.
+    *
+    * @param transitions
+    */
+    public MatrixPowers(double[][] transitions){
+        this.numStates = transitions.length;
+        squares.add(SamplingTable.normalizeRows(transitions));
+    }
+
+    /**
+    * Returns P^$n. The returned matrix is shared with the cache and must not be
+    * modified.
+    *
+    * @param n exponent, at least 1
+    * @return double[][] representing $n-step transition probabilities
+    */
+    public synchronized double[][] power(int n){
+        if (n < 1){
+            throw new IllegalArgumentException("Exponent must be at least 1: " + n);
+        }
+        double[][] result = powers.get(n);
+        if (result != null){
+            return result;
+        }
+        int bit = 0;
+        for (int remaining = n; remaining > 0; remaining >>>= 1, bit++){
+            if ((remaining & 1) == 0){
+                continue;
+            }
+            double[][] square = square(bit);
+            result = (result == null) ? square : multiply(result, square);
+        }
+        powers.put(n, result);
+        return result;
+    }
+
+    /**
+    * Distribution over states on each of the next $maxDays days when starting
+    * from $initialState, stepping a single row vector instead of whole matrices.
+    *
+    * @param initialState
+    * @param maxDays number of days, at least 1
+    * @return double[][] where row d holds the distribution after d + 1 days
+    */
+    public double[][] horizon(int initialState, int maxDays){
+        if (maxDays < 1){
+            throw new IllegalArgumentException("maxDays must be at least 1: " + maxDays);
+        }
+        double[][] transitions;
+        synchronized (this){
+            transitions = squares.get(0);
+        }
+        double[][] distributions = new double[maxDays][];
+        double[] current = transitions[initialState].clone();
+        for (int day = 0; day < maxDays; day++){
+            distributions[day] = current;
+            if (day + 1 < maxDays){
+                double[] next = new double[numStates];
+                for (int i = 0; i < numStates; i++){
+                    double weight = current[i];
+                    if (weight == 0){
+                        continue;
+                    }
+                    double[] row = transitions[i];
+                    for (int j = 0; j < numStates; j++){
+                        next[j] += weight * row[j];
+                    }
+                }
+                current = next;
+            }
+        }
+        return distributions;
+    }
+
+    public int getNumStates(){
+        return numStates;
+    }
+
+    private double[][] square(int bit){
+        while (squares.size() <= bit){
+            double[][] last = squares.get(squares.size() - 1);
+            squares.add(multiply(last, last));
+        }
+        return squares.get(bit);
+    }
+
+    private double[][] multiply(double[][] a, double[][] b){
+        double[][] product = new double[numStates][numStates];
+        for (int i = 0; i < numStates; i++){
+            double[] productRow = product[i];
+            for (int k = 0; k < numStates; k++){
+                double weight = a[i][k];
+                if (weight == 0){
+                    continue;
+                }
+                double[] row = b[k];
+                for (int j = 0; j < numStates; j++){
+                    productRow[j] += weight * row[j];
+                }
+            }
+        }
+        return product;
+    }
+}
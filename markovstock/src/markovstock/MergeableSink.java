@@ -0,0 +1,24 @@
+package markovstock;
+
+/**
+* A sink that can be split into independent parts, each filled by one task
+* without sharing a lock with the others, and merged back once all paths are
+* in. SimulationEngine.aggregate runs any such sink this way.
+*
+* @param <S> the sink type itself
+*/
+public interface MergeableSink<S extends MergeableSink<S>> extends SimulationSink {
+    /**
+    * Empty sink configured like this one, to be merged back later.
+    *
+    * @return S with nothing accepted yet
+    */
+    S newPart();
+
+    /**
+    * Adds everything $part accepted to this sink.
+    *
+    * @param part
+    */
+    void merge(S part);
+}
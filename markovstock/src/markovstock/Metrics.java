@@ -0,0 +1,267 @@
+package markovstock;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+* Process-wide timers and counters for data loading, fitting, simulation,
+* persistence, charting and export. Disabled by default: every hook is then a
+* single volatile read, so instrumented code runs at full speed. Enable with
+* -Dmarkovstock.metrics=true or setEnabled(true), which also registers the
+* JMX beans (markovstock:type=Metrics and markovstock:type=Phase,name=...).
+*/
+public final class Metrics {
+
+    /**
+    * Timed phases. SIMULATE covers a whole doSimulations call including its
+    * persistence; WALK is random walk generation alone and PERSIST the time
+    * spent in SQLite batch inserts and commits.
+    */
+    public enum Phase {
+        FETCH, FIT, SIMULATE, WALK, PERSIST, EXTRACT, EXPORT, BACKTEST
+    }
+
+    public enum Counter {
+        PATHS, STEPS, ROWS_WRITTEN, ROWS_READ
+    }
+
+    private static volatile boolean enabled = Boolean.getBoolean("markovstock.metrics");
+    private static final Map<Phase, LatencyHistogram> histograms = new EnumMap<Phase, LatencyHistogram>(Phase.class);
+    private static final Map<Counter, LongAdder> counters = new EnumMap<Counter, LongAdder>(Counter.class);
+    private static final List<MetricsListener> listeners = new CopyOnWriteArrayList<MetricsListener>();
+    private static boolean registered;
+
+    static{
+        for (Phase phase: Phase.values()){
+            histograms.put(phase, new LatencyHistogram());
+        }
+        for (Counter counter: Counter.values()){
+            counters.put(counter, new LongAdder());
+        }
+        if (enabled){
+            registerMBeans();
+        }
+    }
+
+    private Metrics(){
+    }
+
+    public static boolean isEnabled(){
+        return enabled;
+    }
+
+    /**
+    * Turns recording on or off; turning it on registers the JMX beans.
+    *
+    * @param on
+    */
+    public static void setEnabled(boolean on){
+        if (on){
+            registerMBeans();
+        }
+        enabled = on;
+    }
+
+    /**
+    * Starts timing a phase.
+    *
+    * @return long to pass to stop, 0 when metrics are disabled
+    */
+    public static long start(){
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+    * Finishes timing a phase started with start.
+    *
+    * @param phase
+    * @param startNanos
+    */
+    public static void stop(Phase phase, long startNanos){
+        if (startNanos != 0){
+            record(phase, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+    * Records a duration measured elsewhere.
+    *
+    * @param phase
+    * @param nanos
+    */
+    public static void record(Phase phase, long nanos){
+        if (!enabled){
+            return;
+        }
+        histograms.get(phase).record(nanos);
+        for (MetricsListener listener: listeners){
+            listener.phaseCompleted(phase, nanos);
+        }
+    }
+
+    /**
+    * Adds to a counter.
+    *
+    * @param counter
+    * @param delta
+    */
+    public static void add(Counter counter, long delta){
+        if (enabled){
+            counters.get(counter).add(delta);
+        }
+    }
+
+    public static long get(Counter counter){
+        return counters.get(counter).sum();
+    }
+
+    public static LatencyHistogram histogram(Phase phase){
+        return histograms.get(phase);
+    }
+
+    public static void addListener(MetricsListener listener){
+        listeners.add(listener);
+    }
+
+    public static void removeListener(MetricsListener listener){
+        listeners.remove(listener);
+    }
+
+    /**
+    * Clears every counter and histogram.
+    */
+    public static void reset(){
+        for (LatencyHistogram histogram: histograms.values()){
+            histogram.reset();
+        }
+        for (LongAdder counter: counters.values()){
+            counter.reset();
+        }
+    }
+
+    /**
+    * One line per phase that ran and one per counter, for logs.
+    *
+    * @return String representing current metrics
+    */
+    public static String summary(){
+        StringBuilder summary = new StringBuilder();
+        for (Phase phase: Phase.values()){
+            LatencyHistogram histogram = histograms.get(phase);
+            if (histogram.getCount() > 0){
+                summary.append(String.format("%-8s n=%d total=%.1fms mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms%n",
+                phase, histogram.getCount(), histogram.getTotalNanos() / 1e6, histogram.getMeanNanos() / 1e6,
+                histogram.getPercentileNanos(0.5) / 1e6, histogram.getPercentileNanos(0.99) / 1e6, histogram.getMaxNanos() / 1e6));
+            }
+        }
+        for (Counter counter: Counter.values()){
+            summary.append(String.format("%-12s %d%n", counter, get(counter)));
+        }
+        return summary.toString();
+    }
+
+    private static synchronized void registerMBeans(){
+        if (registered){
+            return;
+        }
+        registered = true;
+        try{
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new CounterBean(), new ObjectName("markovstock:type=Metrics"));
+            for (Phase phase: Phase.values()){
+                server.registerMBean(new PhaseBean(histograms.get(phase)),
+                new ObjectName("markovstock:type=Phase,name=" + phase.name().toLowerCase()));
+            }
+        }
+        catch (JMException | SecurityException e){
+            System.err.println("Could not register metrics MBeans: " + e);
+        }
+    }
+
+    private static class CounterBean implements MetricsMXBean {
+        @Override
+        public boolean isEnabled(){
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean on){
+            Metrics.setEnabled(on);
+        }
+
+        @Override
+        public long getPathsSimulated(){
+            return get(Counter.PATHS);
+        }
+
+        @Override
+        public long getStepsSimulated(){
+            return get(Counter.STEPS);
+        }
+
+        @Override
+        public long getRowsWritten(){
+            return get(Counter.ROWS_WRITTEN);
+        }
+
+        @Override
+        public long getRowsRead(){
+            return get(Counter.ROWS_READ);
+        }
+
+        @Override
+        public void reset(){
+            Metrics.reset();
+        }
+    }
+
+    private static class PhaseBean implements PhaseMXBean {
+        private final LatencyHistogram histogram;
+
+        private PhaseBean(LatencyHistogram histogram){
+            this.histogram = histogram;
+        }
+
+        @Override
+        public long getCount(){
+            return histogram.getCount();
+        }
+
+        @Override
+        public double getTotalMillis(){
+            return histogram.getTotalNanos() / 1e6;
+        }
+
+        @Override
+        public double getMeanMillis(){
+            return histogram.getMeanNanos() / 1e6;
+        }
+
+        @Override
+        public double getMaxMillis(){
+            return histogram.getMaxNanos() / 1e6;
+        }
+
+        @Override
+        public double getP50Millis(){
+            return histogram.getPercentileNanos(0.5) / 1e6;
+        }
+
+        @Override
+        public double getP90Millis(){
+            return histogram.getPercentileNanos(0.9) / 1e6;
+        }
+
+        @Override
+        public double getP99Millis(){
+            return histogram.getPercentileNanos(0.99) / 1e6;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package markovstock;
+
+/**
+* Receives every timed phase as it completes, e.g. to forward timings to an
+* external monitoring system. Called on the thread that ran the phase, so
+* implementations must be thread-safe and quick.
+*/
+public interface MetricsListener {
+
+    /**
+    * Called when a timed phase completes.
+    *
+    * @param phase
+    * @param nanos duration of the phase
+    */
+    void phaseCompleted(Metrics.Phase phase, long nanos);
+}
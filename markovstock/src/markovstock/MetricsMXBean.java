@@ -0,0 +1,21 @@
+package markovstock;
+
+/**
+* JMX view of the counters in Metrics, registered as markovstock:type=Metrics.
+*/
+public interface MetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getPathsSimulated();
+
+    long getStepsSimulated();
+
+    long getRowsWritten();
+
+    long getRowsRead();
+
+    void reset();
+}
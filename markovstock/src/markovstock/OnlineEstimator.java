@@ -0,0 +1,265 @@
+package markovstock;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+* Keeps MarkovChain parameters of one symbol up to date as bars arrive, over
+* either a sliding window of the last N moves or all moves weighted by
+* exponential decay, so last week counts for more than the 1990s. Each close
+* costs O(1): the move is classified once, against the average change at the
+* time it arrives, and only the counts of the transition entering (and, for a
+* window, leaving) are touched. Moves are never reclassified later, so the
+* counts are not those of a full refit with ParameterEstimator, which
+* classifies every move against the one average of the whole sample; a
+* window's counts equal a replay that classifies each move against the
+* average of the window it arrived in and counts the transitions among the
+* last N moves.
+*
+* Fitted chains are published as immutable snapshots through an atomic
+* reference: getChain never blocks and always sees a consistent chain, while
+* add and publish are serialized among writers.
+*/
+public class OnlineEstimator implements ChainEstimator {
+    private static final int NUM_STATES = 5;
+
+    private final String symbol;
+    private final int window;
+    private final double decay;
+    private final double[][] counts = new double[NUM_STATES][NUM_STATES];
+    private final double[] changes;
+    private final byte[] states;
+    private int head;
+    private int size;
+    private int sinceResum;
+    private double sumChanges;
+    private double weight;
+    private long seen;
+    private double lastClose;
+    private boolean hasClose;
+    private int lastState = -1;
+    private int publishInterval = 1;
+    private int sincePublish;
+    private ChainCache chainCache;
+    private final AtomicReference<MarkovChain> snapshot = new AtomicReference<MarkovChain>();
+
+    private OnlineEstimator(String sym, int window, double decay){
+        this.symbol = sym.toUpperCase();
+        this.window = window;
+        this.decay = decay;
+        this.changes = new double[Math.max(window, 0)];
+        this.states = new byte[Math.max(window, 0)];
+    }
+
+    /**
+    * Estimator over the last $moves daily moves.
+    *
+    * @param sym
+    * @param moves
+    * @return OnlineEstimator with a sliding window
+    */
+    public static OnlineEstimator window(String sym, int moves){
+        if (moves < 2){
+            throw new IllegalArgumentException("Window must hold at least two moves: " + moves);
+        }
+        return new OnlineEstimator(sym, moves, 1);
+    }
+
+    /**
+    * Estimator over every move, a move's weight halving every $halfLife bars.
+    *
+    * @param sym
+    * @param halfLife
+    * @return OnlineEstimator with exponential decay
+    */
+    public static OnlineEstimator decay(String sym, double halfLife){
+        if (!(halfLife > 0)){
+            throw new IllegalArgumentException("Half-life must be positive: " + halfLife);
+        }
+        return new OnlineEstimator(sym, 0, Math.pow(0.5, 1 / halfLife));
+    }
+
+    /**
+    * Adds the next closing price and publishes a new chain every
+    * publishInterval moves.
+    *
+    * @param close
+    */
+    @Override
+    public synchronized void add(double close){
+        if (hasClose){
+            addChange(100.0 * ((close - lastClose) / lastClose));
+            if (++sincePublish >= publishInterval){
+                publish();
+            }
+        }
+        lastClose = close;
+        hasClose = true;
+    }
+
+    /**
+    * Adds every close of a history, oldest first, publishing once at the end.
+    *
+    * @param history
+    */
+    public synchronized void addAll(PriceHistory history){
+        int interval = publishInterval;
+        publishInterval = Integer.MAX_VALUE;
+        try{
+            for (int i = 0; i < history.size(); i++){
+                add(history.getClose(i));
+            }
+        }
+        finally{
+            publishInterval = interval;
+        }
+        if (sincePublish > 0){
+            publish();
+        }
+    }
+
+    private void addChange(double change){
+        double magnitude = Math.abs(change);
+        seen++;
+        if (window > 0){
+            if (size == window){
+                int oldest = head;
+                int next = (head + 1) % window;
+                counts[states[oldest]][states[next]]--;
+                sumChanges -= Math.abs(changes[oldest]);
+                head = next;
+                size--;
+            }
+            int slot = (head + size) % window;
+            changes[slot] = change;
+            sumChanges += magnitude;
+            size++;
+            weight = size;
+            if (++sinceResum >= window){
+                resum();
+            }
+            int state = ParseData.classifyDifference(change, getAverageChange());
+            states[slot] = (byte) state;
+            if (size > 1){
+                counts[lastState][state]++;
+            }
+            lastState = state;
+        }
+        else{
+            sumChanges = sumChanges * decay + magnitude;
+            weight = weight * decay + 1;
+            int state = ParseData.classifyDifference(change, getAverageChange());
+            for (double[] row: counts){
+                for (int j = 0; j < NUM_STATES; j++){
+                    row[j] *= decay;
+                }
+            }
+            if (lastState >= 0){
+                counts[lastState][state]++;
+            }
+            lastState = state;
+        }
+    }
+
+    /**
+    * Recomputes the window's sum from scratch once per window length, so
+    * rounding from adding and removing moves cannot build up.
+    */
+    private void resum(){
+        double sum = 0;
+        for (int i = 0; i < size; i++){
+            sum += Math.abs(changes[(head + i) % window]);
+        }
+        sumChanges = sum;
+        sinceResum = 0;
+    }
+
+    /**
+    * Average absolute percent change over the window, or decay-weighted.
+    *
+    * @return double representing average change
+    */
+    @Override
+    public synchronized double getAverageChange(){
+        return weight == 0 ? 0 : sumChanges / weight;
+    }
+
+    /**
+    * Row-normalized (weighted) transition counts; rows never entered are zero.
+    *
+    * @return double[][] representing transition matrix
+    */
+    @Override
+    public synchronized double[][] getTransitionMatrix(){
+        double[][] transitionMatrix = new double[NUM_STATES][NUM_STATES];
+        for (int i = 0; i < NUM_STATES; i++){
+            double sum = 0;
+            for (int j = 0; j < NUM_STATES; j++){
+                sum += counts[i][j];
+            }
+            for (int k = 0; k < NUM_STATES; k++){
+                transitionMatrix[i][k] = sum > 0 ? Math.max(counts[i][k], 0) / sum : 0;
+            }
+        }
+        return transitionMatrix;
+    }
+
+    /**
+    * Builds a chain from the current counts and makes it the snapshot seen
+    * by getChain, and by the chain cache if one is set.
+    *
+    * @return MarkovChain published
+    */
+    public synchronized MarkovChain publish(){
+        MarkovChain chain = new MarkovChain(symbol, getAverageChange(), getTransitionMatrix());
+        snapshot.set(chain);
+        sincePublish = 0;
+        if (chainCache != null){
+            chainCache.put(chain);
+        }
+        return chain;
+    }
+
+    /**
+    * Latest published chain; never blocks.
+    *
+    * @return MarkovChain last published, null before the first publish
+    */
+    public MarkovChain getChain(){
+        return snapshot.get();
+    }
+
+    /**
+    * Sets after how many new moves add publishes a chain (default every move).
+    *
+    * @param publishInterval
+    */
+    public synchronized void setPublishInterval(int publishInterval){
+        if (publishInterval < 1){
+            throw new IllegalArgumentException("Publish interval must be positive: " + publishInterval);
+        }
+        this.publishInterval = publishInterval;
+    }
+
+    /**
+    * Sets a cache every published chain is also put in, e.g.
+    * ChainCache.getDefault(), so simulations pick up new fits; null for none.
+    *
+    * @param chainCache
+    */
+    public synchronized void setChainCache(ChainCache chainCache){
+        this.chainCache = chainCache;
+    }
+
+    public String getSymbol(){
+        return symbol;
+    }
+
+    /**
+    * Number of moves currently in the window, or seen so far with decay.
+    *
+    * @return long representing moves
+    */
+    public synchronized long getNumChanges(){
+        return window > 0 ? size : seen;
+    }
+}
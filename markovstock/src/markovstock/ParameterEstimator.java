@@ -0,0 +1,237 @@
+package markovstock;
+
+import java.util.Arrays;
+
+/**
+* Estimates MarkovChain parameters from closing prices kept in primitive
+* arrays. Closes are fed one at a time, so rows can be streamed straight from
+* a reader, and new bars can be added after a fit: only the moves whose
+* classification flips because the average change moved are recounted,
+* instead of rescanning the whole history.
+*/
+public class ParameterEstimator implements ChainEstimator {
+    private static final int NUM_STATES = 5;
+    private static final int MIN_REBUILD = 64;
+
+    private double[] changes = new double[256];
+    private byte[] states = new byte[256];
+    private int[] order = new int[256];
+    private int numChanges;
+    private int numClassified;
+    private final int[][] counts = new int[NUM_STATES][NUM_STATES];
+    private double sumChanges;
+    private double classifiedAverage;
+    private double lastClose;
+    private boolean hasClose;
+
+    /**
+    * Adds the next closing price of the series.
+    *
+    * @param close
+    */
+    @Override
+    public void add(double close){
+        if (hasClose){
+            if (numChanges == changes.length){
+                grow();
+            }
+            double change = 100.0 * ((close - lastClose) / lastClose);
+            changes[numChanges++] = change;
+            sumChanges += Math.abs(change);
+        }
+        lastClose = close;
+        hasClose = true;
+    }
+
+    /**
+    * Number of price changes (closes minus one) seen so far.
+    *
+    * @return int representing number of changes
+    */
+    public int getNumChanges(){
+        return numChanges;
+    }
+
+    /**
+    * Average absolute percent change between consecutive closes.
+    *
+    * @return double representing average change
+    */
+    @Override
+    public double getAverageChange(){
+        return numChanges == 0 ? 0 : Math.abs(sumChanges / numChanges);
+    }
+
+    /**
+    * Row-normalized counts of transitions between consecutive move states,
+    * classified against the current average change.
+    *
+    * @return double[][] representing transition matrix
+    */
+    @Override
+    public double[][] getTransitionMatrix(){
+        update();
+        double[][] transitionMatrix = new double[NUM_STATES][NUM_STATES];
+        for (int i = 0; i < NUM_STATES; i++){
+            int sum = 0;
+            for (int j = 0; j < NUM_STATES; j++){
+                sum += counts[i][j];
+            }
+            for (int k = 0; k < NUM_STATES; k++){
+                if (sum != 0){
+                    transitionMatrix[i][k] = (double)(counts[i][k]) / sum;
+                }
+                else{
+                    transitionMatrix[i][k] = 0;
+                }
+            }
+        }
+        return transitionMatrix;
+    }
+
+    /**
+    * Builds a chain from the current estimate.
+    *
+    * @param sym
+    * @return MarkovChain with estimated parameters
+    */
+    public MarkovChain toMarkovChain(String sym){
+        return new MarkovChain(sym, getAverageChange(), getTransitionMatrix());
+    }
+
+    private void update(){
+        double average = getAverageChange();
+        int pending = numChanges - numClassified;
+        if (pending == 0 && average == classifiedAverage){
+            return;
+        }
+        if (pending > Math.max(MIN_REBUILD, numClassified / 16)){
+            rebuild(average);
+            return;
+        }
+        for (int i = numClassified; i < numChanges; i++){
+            insertOrdered(i);
+            states[i] = (byte) ParseData.classifyDifference(changes[i], classifiedAverage);
+            if (i > 0){
+                counts[states[i-1]][states[i]]++;
+            }
+        }
+        numClassified = numChanges;
+        reclassify(average);
+    }
+
+    private void rebuild(double average){
+        for (int i = 0; i < numChanges; i++){
+            order[i] = i;
+        }
+        sortOrder();
+        for (int[] row: counts){
+            Arrays.fill(row, 0);
+        }
+        for (int i = 0; i < numChanges; i++){
+            states[i] = (byte) ParseData.classifyDifference(changes[i], average);
+            if (i > 0){
+                counts[states[i-1]][states[i]]++;
+            }
+        }
+        numClassified = numChanges;
+        classifiedAverage = average;
+    }
+
+    /**
+    * Moves between the old and new average change switch between small and
+    * large; walk just those through the order by magnitude and fix the counts
+    * of the (at most two) transitions each one takes part in.
+    */
+    private void reclassify(double average){
+        double low = Math.min(classifiedAverage, average);
+        double high = Math.max(classifiedAverage, average);
+        for (int position = firstAtLeast(low); position < numClassified; position++){
+            int index = order[position];
+            if (Math.abs(changes[index]) >= high){
+                break;
+            }
+            byte state = (byte) ParseData.classifyDifference(changes[index], average);
+            if (state == states[index]){
+                continue;
+            }
+            if (index > 0){
+                counts[states[index-1]][states[index]]--;
+                counts[states[index-1]][state]++;
+            }
+            if (index + 1 < numClassified){
+                counts[states[index]][states[index+1]]--;
+                counts[state][states[index+1]]++;
+            }
+            states[index] = state;
+        }
+        classifiedAverage = average;
+    }
+
+    private int firstAtLeast(double magnitude){
+        int low = 0;
+        int high = numClassified;
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            if (Math.abs(changes[order[middle]]) < magnitude){
+                low = middle + 1;
+            }
+            else{
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void insertOrdered(int index){
+        double magnitude = Math.abs(changes[index]);
+        int low = 0;
+        int high = index;
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            if (Math.abs(changes[order[middle]]) <= magnitude){
+                low = middle + 1;
+            }
+            else{
+                high = middle;
+            }
+        }
+        System.arraycopy(order, low, order, low + 1, index - low);
+        order[low] = index;
+    }
+
+    private void sortOrder(){
+        int[] buffer = new int[numChanges];
+        int[] source = order;
+        int[] target = buffer;
+        for (int width = 1; width < numChanges; width *= 2){
+            for (int start = 0; start < numChanges; start += 2 * width){
+                int middle = Math.min(start + width, numChanges);
+                int end = Math.min(start + 2 * width, numChanges);
+                int left = start;
+                int right = middle;
+                for (int k = start; k < end; k++){
+                    if (left < middle && (right >= end || Math.abs(changes[source[left]]) <= Math.abs(changes[source[right]]))){
+                        target[k] = source[left++];
+                    }
+                    else{
+                        target[k] = source[right++];
+                    }
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != order){
+            System.arraycopy(source, 0, order, 0, numChanges);
+        }
+    }
+
+    private void grow(){
+        int capacity = changes.length * 2;
+        changes = Arrays.copyOf(changes, capacity);
+        states = Arrays.copyOf(states, capacity);
+        order = Arrays.copyOf(order, capacity);
+    }
+}
@@ -0,0 +1,41 @@
+package markovstock;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+* Keyed storage of estimated chain parameters. Entries are keyed by symbol and
+* estimation date; storing the same key again replaces the earlier entry.
+*/
+public interface ParameterStore {
+
+    /**
+    * Stores (or replaces) the parameters estimated for $sym on $estimationDate.
+    *
+    * @param sym
+    * @param estimationDate
+    * @param averageChange
+    * @param transitions
+    * @throws IOException
+    */
+    void put(String sym, LocalDate estimationDate, double averageChange, double[][] transitions) throws IOException;
+
+    /**
+    * Loads the most recent parameters of $sym.
+    *
+    * @param sym
+    * @return MarkovChain with stored parameters, null if none are stored
+    * @throws IOException
+    */
+    MarkovChain load(String sym) throws IOException;
+
+    /**
+    * Loads the parameters of $sym estimated on $estimationDate.
+    *
+    * @param sym
+    * @param estimationDate
+    * @return MarkovChain with stored parameters, null if none are stored
+    * @throws IOException
+    */
+    MarkovChain load(String sym, LocalDate estimationDate) throws IOException;
+}
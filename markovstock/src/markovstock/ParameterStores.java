@@ -0,0 +1,53 @@
+package markovstock;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+* Holds the ParameterStore used by ParseData.createParameters and the
+* MarkovChain(String) constructor.
+*/
+public final class ParameterStores {
+    public static final String DEFAULT_FILE = "parameters.bin";
+
+    private static ParameterStore store;
+
+    private ParameterStores(){
+    }
+
+    /**
+    * Returns the shared store, opening parameters.bin on first use.
+    *
+    * @return ParameterStore shared by the application
+    * @throws IOException
+    */
+    public static synchronized ParameterStore getDefault() throws IOException{
+        if (store == null){
+            store = new BinaryParameterStore(new File(DEFAULT_FILE));
+        }
+        return store;
+    }
+
+    /**
+    * Replaces the shared store, e.g. with one kept in a different file.
+    *
+    * @param parameterStore
+    */
+    public static synchronized void setDefault(ParameterStore parameterStore){
+        store = parameterStore;
+    }
+
+    /**
+    * Closes the shared store if it holds a file open; the next getDefault
+    * opens it again.
+    *
+    * @throws IOException
+    */
+    public static synchronized void closeDefault() throws IOException{
+        if (store instanceof Closeable){
+            ((Closeable) store).close();
+        }
+        store = null;
+    }
+}
@@ -0,0 +1,194 @@
+package markovstock;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import com.opencsv.CSVReader;
+
+public class ParseData {
+
+    /**
+    * Fetch CSV from Yahoo Finance and return iterable list of rows.
+    *
+    * @param symbol
+    * @return ArrayList of String[] representing CSV rows
+    * @throws MalformedURLException
+    * @throws IOException
+    */
+    public static ArrayList<String[]> obtainRecords(String symbol) throws MalformedURLException, IOException{
+        String url = "http://ichart.finance.yahoo.com/table.csv?s=" + symbol;
+        InputStream csv = new URL(url).openStream();
+        Reader reader = new InputStreamReader(csv, "UTF-8");
+        CSVReader csvReader = new CSVReader(reader);
+        List<String[]> records = csvReader.readAll();
+        csvReader.close();
+        return new ArrayList<String[]>(records.subList(1, records.size()));
+    }
+
+    /**
+    * Fetch CSV from Yahoo Finance and stream closing prices straight into an
+    * estimator, without materializing the rows.
+    *
+    * @param symbol
+    * @return ParameterEstimator fed with every close of the series
+    * @throws MalformedURLException
+    * @throws IOException
+    */
+    public static ParameterEstimator streamRecords(String symbol) throws MalformedURLException, IOException{
+        long timer = Metrics.start();
+        String url = "http://ichart.finance.yahoo.com/table.csv?s=" + symbol;
+        InputStream csv = new URL(url).openStream();
+        Reader reader = new InputStreamReader(csv, "UTF-8");
+        CSVReader csvReader = new CSVReader(reader);
+        ParameterEstimator estimator = new ParameterEstimator();
+        readCloses(csvReader, estimator);
+        csvReader.close();
+        Metrics.stop(Metrics.Phase.FETCH, timer);
+        return estimator;
+    }
+
+    /**
+    * Fetch CSV from Yahoo Finance starting at a given date, so a refresh only
+    * downloads the rows not cached yet.
+    *
+    * @param symbol
+    * @param from first date to fetch, null for the whole history
+    * @return PriceHistory of the fetched rows
+    * @throws MalformedURLException
+    * @throws IOException
+    */
+    public static PriceHistory obtainHistory(String symbol, LocalDate from) throws MalformedURLException, IOException{
+        return UrlHistorySource.YAHOO.fetch(symbol, from);
+    }
+
+    /**
+    * Bring the local history cache of $symbol up to date, downloading only rows
+    * after the last cached date, and fit an estimator from the cache.
+    *
+    * @param symbol
+    * @return ParameterEstimator fed with every cached close, oldest first
+    * @throws MalformedURLException
+    * @throws IOException
+    */
+    public static ParameterEstimator refreshRecords(String symbol) throws MalformedURLException, IOException{
+        PriceHistoryCache cache = PriceHistoryCache.getDefault();
+        LocalDate last = cache.getLastDate(symbol);
+        if (last == null || last.isBefore(LocalDate.now())){
+            cache.append(obtainHistory(symbol, last == null ? null : last.plusDays(1)));
+        }
+        return cache.estimator(symbol);
+    }
+
+    /**
+    * Feeds the close column of every row after the header into an estimator,
+    * oldest first regardless of the order of the rows.
+    *
+    * @param csvReader
+    * @param estimator
+    * @throws IOException
+    */
+    public static void readCloses(CSVReader csvReader, ParameterEstimator estimator) throws IOException{
+        PriceHistory history = PriceHistoryLoader.read(csvReader, "");
+        for (int i = 0; i < history.size(); i++){
+            estimator.add(history.getClose(i));
+        }
+    }
+
+    /**
+    * Load history of $sym from a local CSV file (plain or gzip) instead of Yahoo Finance.
+    *
+    * @param sym
+    * @param file
+    * @return ParameterEstimator fed with every close of the file, oldest first
+    * @throws IOException
+    */
+    public static ParameterEstimator loadRecords(String sym, File file) throws IOException{
+        return PriceHistoryLoader.load(file, sym).toEstimator();
+    }
+
+    /**
+    * Calculate parameters of MarkovChain, and save to parameter store for later use.
+    *
+    * @param sym
+    * @param records rows of Date,Open,High,Low,Close in any date order
+    * @return MarkovChain object created with derived parameters
+    * @throws IOException
+    */
+    public static MarkovChain createParameters(String sym, ArrayList<String[]> records) throws IOException{
+        PriceHistory history = new PriceHistory(sym, records.size());
+        for (String[] day: records){
+            Long epochDay = PriceHistoryLoader.parseEpochDay(day[0]);
+            if (epochDay == null){
+                throw new IllegalArgumentException("Not a date: " + day[0]);
+            }
+            history.add(epochDay, Double.parseDouble(day[4]));
+        }
+        return createParameters(sym, history);
+    }
+
+    /**
+    * Calculate parameters of MarkovChain from a price history, oldest close first,
+    * and save to parameter store for later use.
+    *
+    * @param sym
+    * @param history
+    * @return MarkovChain object created with derived parameters
+    * @throws IOException
+    */
+    public static MarkovChain createParameters(String sym, PriceHistory history) throws IOException{
+        return createParameters(sym, history.toEstimator());
+    }
+
+    /**
+    * Save parameters of an estimator to parameter store for later use. The estimator can
+    * keep receiving closes and be saved again without rescanning history.
+    *
+    * @param sym
+    * @param estimator
+    * @return MarkovChain object created with derived parameters
+    * @throws IOException
+    */
+    public static MarkovChain createParameters(String sym, ParameterEstimator estimator) throws IOException{
+        long timer = Metrics.start();
+        double averageChange = estimator.getAverageChange();
+        double[][] transitionMatrix = estimator.getTransitionMatrix();
+        ParameterStores.getDefault().put(sym, LocalDate.now(), averageChange, transitionMatrix);
+        MarkovChain chain = new MarkovChain(sym, averageChange, transitionMatrix);
+        ChainCache.getDefault().put(chain);
+        Metrics.stop(Metrics.Phase.FIT, timer);
+        return chain;
+    }
+
+    /**
+    * Classify a percent-change as its corresponding state in the transition matrix.
+    *
+    * @param diff
+    * @param avgDiff
+    * @return int representing state classification:
+    * 0: small up, 1:large up, 2:small down, 3:large down, 4:no difference
+    */
+    public static int classifyDifference(double diff, double avgDiff){
+        if (diff == 0){
+            return 4;
+        }
+        if (Math.abs(diff) >= avgDiff){
+            if (diff > 0){
+                return 1;
+            }
+            return 3;
+        }
+        else{
+            if (diff > 0){
+                return 0;
+            }
+            return 2;
+        }
+    }
+}
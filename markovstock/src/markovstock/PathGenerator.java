@@ -0,0 +1,32 @@
+package markovstock;
+
+/**
+* Anything that can generate a random walk of prices, so SimulationEngine can
+* run first-order, higher-order or other chains alike.
+*/
+public interface PathGenerator {
+
+    /**
+    * Conducts a random walk drawing only from the given generator.
+    *
+    * @param days
+    * @param startingPrice
+    * @param random
+    * @return double[] representing $days of random walking
+    */
+    double[] predict(int days, double startingPrice, RandomSource random);
+
+    /**
+    * Generator family used to seed each walk.
+    *
+    * @return RandomSourceFactory of the walks
+    */
+    RandomSourceFactory getRandomFactory();
+
+    /**
+    * Largest absolute percent change of a single day's step.
+    *
+    * @return double representing bound on daily percent change
+    */
+    double getMaxDailyChange();
+}
@@ -0,0 +1,207 @@
+package markovstock;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+* Binary store of simulated paths backed by a memory-mapped file: a 32-byte
+* header followed by a contiguous little-endian double matrix with one row of
+* $numDays prices per simulation. Rows are written straight from simulation
+* threads and read back as views of the mapping, without copying or parsing.
+*/
+public class PathStore implements SimulationSink, Closeable {
+    private static final int MAGIC = 0x4D4B5650;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final boolean writable;
+    private final int numSims;
+    private final int numDays;
+    private final double startingPrice;
+    private final int rowsPerSegment;
+    private final MappedByteBuffer[] mappings;
+    private final DoubleBuffer[] segments;
+
+    private PathStore(RandomAccessFile file, boolean writable, int numSims, int numDays, double startingPrice) throws IOException{
+        this.file = file;
+        this.channel = file.getChannel();
+        this.writable = writable;
+        this.numSims = numSims;
+        this.numDays = numDays;
+        this.startingPrice = startingPrice;
+        long rowBytes = 8L * Math.max(numDays, 1);
+        this.rowsPerSegment = (int) Math.max(1, Integer.MAX_VALUE / rowBytes);
+        int numSegments = (numSims + rowsPerSegment - 1) / rowsPerSegment;
+        this.mappings = new MappedByteBuffer[numSegments];
+        this.segments = new DoubleBuffer[numSegments];
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        for (int i = 0; i < numSegments; i++){
+            int rows = Math.min(rowsPerSegment, numSims - i * rowsPerSegment);
+            mappings[i] = channel.map(mode, HEADER_SIZE + i * rowsPerSegment * rowBytes, rows * rowBytes);
+            mappings[i].order(ByteOrder.LITTLE_ENDIAN);
+            segments[i] = mappings[i].asDoubleBuffer();
+        }
+    }
+
+    /**
+    * Creates (or truncates) a store sized for $numSims paths of $numDays days.
+    *
+    * @param path
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @return PathStore open for writing and reading
+    * @throws IOException
+    */
+    public static PathStore create(File path, int numSims, int numDays, double startingPrice) throws IOException{
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try{
+            file.setLength(0);
+            file.setLength(HEADER_SIZE + 8L * numSims * numDays);
+            MappedByteBuffer header = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(numSims);
+            header.putInt(numDays);
+            header.putDouble(startingPrice);
+            header.force();
+            return new PathStore(file, true, numSims, numDays, startingPrice);
+        }
+        catch (IOException | RuntimeException | Error e){
+            closeAfterFailure(file, e);
+            throw e;
+        }
+    }
+
+    /**
+    * Opens an existing store read-only.
+    *
+    * @param path
+    * @return PathStore open for reading
+    * @throws IOException
+    */
+    public static PathStore open(File path) throws IOException{
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try{
+            MappedByteBuffer header = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION){
+                throw new IOException("Not a path store: " + path);
+            }
+            int numSims = header.getInt();
+            int numDays = header.getInt();
+            double startingPrice = header.getDouble();
+            return new PathStore(file, false, numSims, numDays, startingPrice);
+        }
+        catch (IOException | RuntimeException | Error e){
+            closeAfterFailure(file, e);
+            throw e;
+        }
+    }
+
+    /**
+    * Closes a file a store could not be made from, keeping $failure as the
+    * exception thrown.
+    */
+    private static void closeAfterFailure(RandomAccessFile file, Throwable failure){
+        try{
+            file.close();
+        }
+        catch (IOException e){
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+    * Writes one path into its row. Safe to call from several threads as long as
+    * each simulation is written once.
+    *
+    * @param sim
+    * @param path
+    */
+    @Override
+    public void accept(int sim, double[] path){
+        if (path.length != numDays){
+            throw new IllegalArgumentException("Expected " + numDays + " days but got " + path.length);
+        }
+        DoubleBuffer row = segments[sim / rowsPerSegment].duplicate();
+        row.position((sim % rowsPerSegment) * numDays);
+        row.put(path);
+    }
+
+    /**
+    * Returns a read-only view of one path, backed directly by the mapping.
+    *
+    * @param sim
+    * @return DoubleBuffer representing $numDays prices of simulation $sim
+    */
+    public DoubleBuffer path(int sim){
+        DoubleBuffer row = segments[sim / rowsPerSegment].duplicate();
+        int start = (sim % rowsPerSegment) * numDays;
+        row.limit(start + numDays);
+        row.position(start);
+        return row.slice().asReadOnlyBuffer();
+    }
+
+    /**
+    * Returns the price of simulation $sim on day $day (both starting at 0).
+    *
+    * @param sim
+    * @param day
+    * @return double representing simulated price
+    */
+    public double get(int sim, int day){
+        return segments[sim / rowsPerSegment].get((sim % rowsPerSegment) * numDays + day);
+    }
+
+    /**
+    * Copies one day's prices across all simulations into $prices.
+    *
+    * @param day
+    * @param prices array of at least $numSims elements
+    */
+    public void readDay(int day, double[] prices){
+        for (int sim = 0; sim < numSims; sim++){
+            prices[sim] = get(sim, day);
+        }
+    }
+
+    /**
+    * Flushes written rows to disk.
+    */
+    public void flush(){
+        if (writable){
+            for (MappedByteBuffer mapping: mappings){
+                mapping.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException{
+        flush();
+        channel.close();
+        file.close();
+    }
+
+    public int getNumSims(){
+        return numSims;
+    }
+
+    public int getNumDays(){
+        return numDays;
+    }
+
+    public double getStartingPrice(){
+        return startingPrice;
+    }
+}
@@ -0,0 +1,21 @@
+package markovstock;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+* SimulationSink writing paths to a file. Paths may arrive from several
+* threads and in any order; close flushes and finishes the file.
+*/
+public interface PathWriter extends SimulationSink, Closeable {
+
+    /**
+    * Number of paths written so far.
+    *
+    * @return long representing paths written
+    */
+    long getPathsWritten();
+
+    @Override
+    void close() throws IOException;
+}
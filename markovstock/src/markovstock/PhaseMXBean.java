@@ -0,0 +1,22 @@
+package markovstock;
+
+/**
+* JMX view of the latency histogram of one phase, registered as
+* markovstock:type=Phase,name=<phase>.
+*/
+public interface PhaseMXBean {
+
+    long getCount();
+
+    double getTotalMillis();
+
+    double getMeanMillis();
+
+    double getMaxMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+}
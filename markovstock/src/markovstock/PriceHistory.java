@@ -0,0 +1,188 @@
+package markovstock;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+* Daily closing prices of one symbol, kept as parallel primitive arrays of
+* epoch days and closes. Rows may be added in any order; reads always see
+* them in ascending date order with one close per date (the last one added
+* wins), so fitting never depends on the order a data source happens to use.
+* Not thread-safe.
+*/
+public class PriceHistory {
+    private final String symbol;
+    private long[] epochDays;
+    private double[] closes;
+    private int size;
+    private boolean ordered = true;
+
+    public PriceHistory(String symbol){
+        this(symbol, 256);
+    }
+
+    /**
+    * Constructor with initial capacity given.
+    *
+    * @param symbol
+    * @param capacity
+    */
+    public PriceHistory(String symbol, int capacity){
+        this.symbol = symbol.toUpperCase();
+        this.epochDays = new long[Math.max(capacity, 16)];
+        this.closes = new double[epochDays.length];
+    }
+
+    /**
+    * Adds the close of one trading day.
+    *
+    * @param epochDay days since 1970-01-01
+    * @param close
+    */
+    public void add(long epochDay, double close){
+        if (size == epochDays.length){
+            epochDays = Arrays.copyOf(epochDays, size * 2);
+            closes = Arrays.copyOf(closes, size * 2);
+        }
+        if (size > 0 && epochDay <= epochDays[size-1]){
+            ordered = false;
+        }
+        epochDays[size] = epochDay;
+        closes[size] = close;
+        size++;
+    }
+
+    public void add(LocalDate date, double close){
+        add(date.toEpochDay(), close);
+    }
+
+    public String getSymbol(){
+        return symbol;
+    }
+
+    public int size(){
+        order();
+        return size;
+    }
+
+    public long getEpochDay(int index){
+        order();
+        return epochDays[index];
+    }
+
+    public LocalDate getDate(int index){
+        return LocalDate.ofEpochDay(getEpochDay(index));
+    }
+
+    public double getClose(int index){
+        order();
+        return closes[index];
+    }
+
+    /**
+    * Date of the newest close, or null when empty.
+    *
+    * @return LocalDate of the last row
+    */
+    public LocalDate getLastDate(){
+        order();
+        return size == 0 ? null : LocalDate.ofEpochDay(epochDays[size-1]);
+    }
+
+    /**
+    * Copy of the closes, oldest first.
+    *
+    * @return double[] representing closing prices
+    */
+    public double[] getCloses(){
+        order();
+        return Arrays.copyOf(closes, size);
+    }
+
+    /**
+    * Copy of the dates as epoch days, oldest first.
+    *
+    * @return long[] representing dates
+    */
+    public long[] getEpochDays(){
+        order();
+        return Arrays.copyOf(epochDays, size);
+    }
+
+    /**
+    * Feeds every close into a new estimator in chronological order.
+    *
+    * @return ParameterEstimator fitted on the whole history
+    */
+    public ParameterEstimator toEstimator(){
+        order();
+        ParameterEstimator estimator = new ParameterEstimator();
+        for (int i = 0; i < size; i++){
+            estimator.add(closes[i]);
+        }
+        return estimator;
+    }
+
+    /**
+    * Sorts rows by date and drops repeated dates. Data in descending order (as
+    * Yahoo served it) is just reversed; anything else is merge sorted, which
+    * keeps rows of equal date in insertion order so the last one is kept.
+    */
+    private void order(){
+        if (ordered){
+            return;
+        }
+        boolean descending = true;
+        for (int i = 1; i < size && descending; i++){
+            descending = epochDays[i] < epochDays[i-1];
+        }
+        if (descending){
+            for (int i = 0, j = size - 1; i < j; i++, j--){
+                long day = epochDays[i];
+                epochDays[i] = epochDays[j];
+                epochDays[j] = day;
+                double close = closes[i];
+                closes[i] = closes[j];
+                closes[j] = close;
+            }
+            ordered = true;
+            return;
+        }
+        Integer[] order = sortedOrder();
+        long[] sortedDays = new long[epochDays.length];
+        double[] sortedCloses = new double[closes.length];
+        int count = 0;
+        for (int k = 0; k < size; k++){
+            int index = order[k];
+            if (count > 0 && sortedDays[count-1] == epochDays[index]){
+                count--;
+            }
+            sortedDays[count] = epochDays[index];
+            sortedCloses[count] = closes[index];
+            count++;
+        }
+        epochDays = sortedDays;
+        closes = sortedCloses;
+        size = count;
+        ordered = true;
+    }
+
+    /**
+    * Indexes of the rows ordered by date. The sort is stable, so of two rows
+    * with the same date the one added later comes later and is the one kept.
+    */
+    private Integer[] sortedOrder(){
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++){
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>(){
+            @Override
+            public int compare(Integer a, Integer b){
+                return Long.compare(epochDays[a], epochDays[b]);
+            }
+        });
+        return order;
+    }
+}
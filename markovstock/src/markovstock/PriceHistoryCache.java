@@ -0,0 +1,249 @@
+package markovstock;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+
+/**
+* Local cache of price histories, one binary file per symbol: a 16-byte
+* header (magic, version, row count) followed by little-endian rows of
+* (epoch day, close) in ascending date order. Files are memory-mapped for
+* reading, so a refit reads closes straight from the mapping without any
+* text parsing, and a refresh only appends rows newer than the last cached
+* date. The row count is written after the rows, so an interrupted append
+* leaves the previous history intact.
+*/
+public class PriceHistoryCache {
+    public static final String DEFAULT_DIRECTORY = "history";
+
+    private static final int MAGIC = 0x4D4B5048;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int ROW_SIZE = 16;
+    private static PriceHistoryCache defaultCache;
+
+    private final File directory;
+
+    /**
+    * Constructor with cache directory given; it is created on first write.
+    *
+    * @param directory
+    */
+    public PriceHistoryCache(File directory){
+        this.directory = directory;
+    }
+
+    /**
+    * Returns the cache shared by the application, kept in ./history.
+    *
+    * @return PriceHistoryCache in the default directory
+    */
+    public static synchronized PriceHistoryCache getDefault(){
+        if (defaultCache == null){
+            defaultCache = new PriceHistoryCache(new File(DEFAULT_DIRECTORY));
+        }
+        return defaultCache;
+    }
+
+    public File getDirectory(){
+        return directory;
+    }
+
+    /**
+    * Whether any history of $sym is cached.
+    *
+    * @param sym
+    * @return boolean representing whether a cache file exists
+    */
+    public boolean contains(String sym){
+        return fileOf(sym).isFile();
+    }
+
+    /**
+    * Date of the newest cached close of $sym.
+    *
+    * @param sym
+    * @return LocalDate of the last row, null if nothing is cached
+    * @throws IOException
+    */
+    public synchronized LocalDate getLastDate(String sym) throws IOException{
+        MappedByteBuffer rows = map(sym);
+        if (rows == null || rows.limit() == HEADER_SIZE){
+            return null;
+        }
+        return LocalDate.ofEpochDay(rows.getLong(rows.limit() - ROW_SIZE));
+    }
+
+    /**
+    * Reads the cached history of $sym.
+    *
+    * @param sym
+    * @return PriceHistory of $sym, null if nothing is cached
+    * @throws IOException
+    */
+    public synchronized PriceHistory load(String sym) throws IOException{
+        MappedByteBuffer rows = map(sym);
+        if (rows == null){
+            return null;
+        }
+        int count = (rows.limit() - HEADER_SIZE) / ROW_SIZE;
+        PriceHistory history = new PriceHistory(sym, count);
+        for (int offset = HEADER_SIZE; offset < rows.limit(); offset += ROW_SIZE){
+            history.add(rows.getLong(offset), rows.getDouble(offset + 8));
+        }
+        return history;
+    }
+
+    /**
+    * Feeds the cached closes of $sym into a new estimator, oldest first,
+    * straight from the mapped file.
+    *
+    * @param sym
+    * @return ParameterEstimator fitted on the cached history, null if nothing is cached
+    * @throws IOException
+    */
+    public synchronized ParameterEstimator estimator(String sym) throws IOException{
+        MappedByteBuffer rows = map(sym);
+        if (rows == null){
+            return null;
+        }
+        ParameterEstimator estimator = new ParameterEstimator();
+        for (int offset = HEADER_SIZE + 8; offset < rows.limit(); offset += ROW_SIZE){
+            estimator.add(rows.getDouble(offset));
+        }
+        return estimator;
+    }
+
+    /**
+    * Appends the rows of $history dated after the last cached close, creating
+    * the cache file if needed. Older rows are ignored; use store to replace a
+    * history whose past has changed.
+    *
+    * @param history
+    * @return int representing number of rows appended
+    * @throws IOException
+    */
+    public synchronized int append(PriceHistory history) throws IOException{
+        directory.mkdirs();
+        RandomAccessFile file = new RandomAccessFile(fileOf(history.getSymbol()), "rw");
+        try{
+            FileChannel channel = file.getChannel();
+            long count = readCount(channel, history.getSymbol());
+            long lastDay = Long.MIN_VALUE;
+            if (count > 0){
+                ByteBuffer last = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, last, HEADER_SIZE + (count - 1) * ROW_SIZE);
+                lastDay = last.getLong(0);
+            }
+            int first = 0;
+            while (first < history.size() && history.getEpochDay(first) <= lastDay){
+                first++;
+            }
+            int appended = history.size() - first;
+            if (appended == 0 && channel.size() >= HEADER_SIZE){
+                return 0;
+            }
+            ByteBuffer rows = ByteBuffer.allocate(appended * ROW_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = first; i < history.size(); i++){
+                rows.putLong(history.getEpochDay(i));
+                rows.putDouble(history.getClose(i));
+            }
+            rows.flip();
+            writeFully(channel, rows, HEADER_SIZE + count * ROW_SIZE);
+            channel.truncate(HEADER_SIZE + (count + appended) * ROW_SIZE);
+            writeHeader(channel, count + appended);
+            return appended;
+        }
+        finally{
+            file.close();
+        }
+    }
+
+    /**
+    * Replaces the cached history of the symbol of $history.
+    *
+    * @param history
+    * @throws IOException
+    */
+    public synchronized void store(PriceHistory history) throws IOException{
+        delete(history.getSymbol());
+        append(history);
+    }
+
+    /**
+    * Removes the cached history of $sym.
+    *
+    * @param sym
+    * @return boolean representing whether a file was deleted
+    */
+    public synchronized boolean delete(String sym){
+        return fileOf(sym).delete();
+    }
+
+    private File fileOf(String sym){
+        return new File(directory, sym.toUpperCase() + ".hist");
+    }
+
+    /**
+    * Maps header and rows of a cache file read-only, with the limit set to the
+    * end of the last complete row.
+    */
+    private MappedByteBuffer map(String sym) throws IOException{
+        File path = fileOf(sym);
+        if (!path.isFile()){
+            return null;
+        }
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try{
+            FileChannel channel = file.getChannel();
+            long count = readCount(channel, sym);
+            MappedByteBuffer rows = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + count * ROW_SIZE);
+            rows.order(ByteOrder.LITTLE_ENDIAN);
+            return rows;
+        }
+        finally{
+            file.close();
+        }
+    }
+
+    private static long readCount(FileChannel channel, String sym) throws IOException{
+        if (channel.size() < HEADER_SIZE){
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION){
+            throw new IOException("Not a price history cache file for " + sym);
+        }
+        long count = header.getLong(8);
+        return Math.min(count, (channel.size() - HEADER_SIZE) / ROW_SIZE);
+    }
+
+    private static void writeHeader(FileChannel channel, long count) throws IOException{
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(count);
+        header.flip();
+        writeFully(channel, header, 0);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException{
+        while (buffer.hasRemaining()){
+            if (channel.read(buffer, position + buffer.position()) < 0){
+                throw new IOException("Truncated price history cache file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException{
+        while (buffer.hasRemaining()){
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package markovstock;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import com.opencsv.CSVReader;
+
+/**
+* Reads daily OHLC history from local CSV files, optionally gzip-compressed,
+* so parameters can be fitted without network access. Rows are streamed one
+* at a time into a PriceHistory, which puts them in date order whatever order
+* the file uses. The Date and Close columns are located from the header; files
+* without one are read as Date,Open,High,Low,Close,... like the Yahoo export.
+* Rows whose close is missing or not a number (e.g. "null") are skipped.
+*/
+public class PriceHistoryLoader {
+    private static final int DEFAULT_DATE_COLUMN = 0;
+    private static final int DEFAULT_CLOSE_COLUMN = 4;
+
+    private PriceHistoryLoader(){
+    }
+
+    /**
+    * Loads one file; the symbol is the file name without its .csv or .csv.gz
+    * extension.
+    *
+    * @param file
+    * @return PriceHistory of the file
+    * @throws IOException
+    */
+    public static PriceHistory load(File file) throws IOException{
+        return load(file, symbolOf(file));
+    }
+
+    /**
+    * Loads one file under the given symbol.
+    *
+    * @param file
+    * @param symbol
+    * @return PriceHistory of the file
+    * @throws IOException
+    */
+    public static PriceHistory load(File file, String symbol) throws IOException{
+        long timer = Metrics.start();
+        InputStream input = new FileInputStream(file);
+        try{
+            return read(input, symbol);
+        }
+        catch (IOException | RuntimeException e){
+            throw new IOException("Could not read " + file + ": " + e.getMessage(), e);
+        }
+        finally{
+            input.close();
+            Metrics.stop(Metrics.Phase.FETCH, timer);
+        }
+    }
+
+    /**
+    * Reads CSV from a stream, decompressing it first if it starts with the gzip
+    * magic number. The stream is not closed.
+    *
+    * @param input
+    * @param symbol
+    * @return PriceHistory of the stream
+    * @throws IOException
+    */
+    public static PriceHistory read(InputStream input, String symbol) throws IOException{
+        InputStream buffered = new BufferedInputStream(input, 1 << 16);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == 0x1f && second == 0x8b){
+            buffered = new GZIPInputStream(buffered, 1 << 16);
+        }
+        CSVReader csvReader = new CSVReader(new InputStreamReader(buffered, "UTF-8"));
+        return read(csvReader, symbol);
+    }
+
+    /**
+    * Streams rows of an open reader into a new PriceHistory.
+    *
+    * @param csvReader
+    * @param symbol
+    * @return PriceHistory of the rows
+    * @throws IOException
+    */
+    public static PriceHistory read(CSVReader csvReader, String symbol) throws IOException{
+        PriceHistory history = new PriceHistory(symbol);
+        int dateColumn = DEFAULT_DATE_COLUMN;
+        int closeColumn = DEFAULT_CLOSE_COLUMN;
+        String[] row = csvReader.readNext();
+        if (row != null && parseEpochDay(row[0]) == null){
+            dateColumn = findColumn(row, "date", DEFAULT_DATE_COLUMN);
+            closeColumn = findColumn(row, "close", findColumn(row, "adj close", DEFAULT_CLOSE_COLUMN));
+            row = csvReader.readNext();
+        }
+        for (; row != null; row = csvReader.readNext()){
+            if (row.length <= Math.max(dateColumn, closeColumn)){
+                continue;
+            }
+            Long epochDay = parseEpochDay(row[dateColumn]);
+            if (epochDay == null){
+                continue;
+            }
+            double close;
+            try{
+                close = Double.parseDouble(row[closeColumn]);
+            }
+            catch (NumberFormatException e){
+                continue;
+            }
+            if (close > 0){
+                history.add(epochDay, close);
+            }
+        }
+        return history;
+    }
+
+    /**
+    * Loads every .csv and .csv.gz file of a directory, parsing files in
+    * parallel on one thread per core.
+    *
+    * @param directory
+    * @return Map from symbol to PriceHistory, sorted by symbol
+    * @throws IOException
+    * @throws InterruptedException
+    */
+    public static Map<String, PriceHistory> loadDirectory(File directory) throws IOException, InterruptedException{
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try{
+            return loadDirectory(directory, executor);
+        }
+        finally{
+            executor.shutdown();
+        }
+    }
+
+    /**
+    * Loads every .csv and .csv.gz file of a directory, parsing files on the
+    * given executor.
+    *
+    * @param directory
+    * @param executor
+    * @return Map from symbol to PriceHistory, sorted by symbol
+    * @throws IOException
+    * @throws InterruptedException
+    */
+    public static Map<String, PriceHistory> loadDirectory(File directory, ExecutorService executor) throws IOException, InterruptedException{
+        File[] files = directory.listFiles();
+        if (files == null){
+            throw new FileNotFoundException("Not a directory: " + directory);
+        }
+        Arrays.sort(files);
+        List<Callable<PriceHistory>> tasks = new ArrayList<Callable<PriceHistory>>();
+        for (final File file: files){
+            if (file.isFile() && symbolOf(file) != null){
+                tasks.add(new Callable<PriceHistory>(){
+                    @Override
+                    public PriceHistory call() throws IOException{
+                        return load(file);
+                    }
+                });
+            }
+        }
+        Map<String, PriceHistory> histories = new TreeMap<String, PriceHistory>();
+        for (Future<PriceHistory> result: executor.invokeAll(tasks)){
+            try{
+                PriceHistory history = result.get();
+                histories.put(history.getSymbol(), history);
+            }
+            catch (ExecutionException e){
+                if (e.getCause() instanceof IOException){
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+        return histories;
+    }
+
+    /**
+    * Symbol a file is loaded under, or null if it is not a CSV file.
+    *
+    * @param file
+    * @return String representing upper-case symbol
+    */
+    public static String symbolOf(File file){
+        String name = file.getName();
+        String lower = name.toLowerCase();
+        if (lower.endsWith(".csv.gz")){
+            return name.substring(0, name.length() - 7).toUpperCase();
+        }
+        if (lower.endsWith(".csv")){
+            return name.substring(0, name.length() - 4).toUpperCase();
+        }
+        return null;
+    }
+
+    private static int findColumn(String[] header, String name, int fallback){
+        for (int i = 0; i < header.length; i++){
+            if (header[i].trim().equalsIgnoreCase(name)){
+                return i;
+            }
+        }
+        return fallback;
+    }
+
+    /**
+    * Parses yyyy-MM-dd by hand, since it is by far the common case, and
+    * anything else through LocalDate.parse.
+    *
+    * @param text
+    * @return Long representing epoch day, null if $text is not a date
+    */
+    static Long parseEpochDay(String text){
+        String date = text.trim();
+        if (date.length() == 10 && date.charAt(4) == '-' && date.charAt(7) == '-'){
+            int year = digits(date, 0, 4);
+            int month = digits(date, 5, 7);
+            int day = digits(date, 8, 10);
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31){
+                try{
+                    return LocalDate.of(year, month, day).toEpochDay();
+                }
+                catch (RuntimeException e){
+                    return null;
+                }
+            }
+        }
+        try{
+            return LocalDate.parse(date).toEpochDay();
+        }
+        catch (DateTimeParseException e){
+            return null;
+        }
+    }
+
+    private static int digits(String text, int start, int end){
+        int value = 0;
+        for (int i = start; i < end; i++){
+            char c = text.charAt(i);
+            if (c < '0' || c > '9'){
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
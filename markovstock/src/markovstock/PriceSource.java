@@ -0,0 +1,19 @@
+package markovstock;
+
+import java.io.IOException;
+
+/**
+* Where the current price of a symbol comes from, used as the starting price
+* of simulations. Implementations must be safe to call from many threads.
+*/
+public interface PriceSource {
+
+    /**
+    * Current price of $symbol.
+    *
+    * @param symbol
+    * @return double representing the price
+    * @throws IOException if no price can be had
+    */
+    double getPrice(String symbol) throws IOException;
+}
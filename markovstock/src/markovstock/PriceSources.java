@@ -0,0 +1,38 @@
+package markovstock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+* Holds the PriceSource used by MarkovChain.getCurentPrice.
+*/
+public final class PriceSources {
+    public static final long DEFAULT_TTL_SECONDS = 60;
+
+    private static PriceSource source;
+
+    private PriceSources(){
+    }
+
+    /**
+    * Returns the shared source: the Yahoo quote page with quotes cached for a
+    * minute, unless replaced.
+    *
+    * @return PriceSource shared by the application
+    */
+    public static synchronized PriceSource getDefault(){
+        if (source == null){
+            source = new CachingPriceSource(new YahooPriceSource(), DEFAULT_TTL_SECONDS, TimeUnit.SECONDS);
+        }
+        return source;
+    }
+
+    /**
+    * Replaces the shared source, e.g. with a FilePriceSource or
+    * FixedPriceSource to start simulations from known prices.
+    *
+    * @param priceSource
+    */
+    public static synchronized void setDefault(PriceSource priceSource){
+        source = priceSource;
+    }
+}
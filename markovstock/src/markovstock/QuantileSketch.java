@@ -0,0 +1,137 @@
+package markovstock;
+
+/**
+* Mergeable streaming quantile estimate for positive values. Values are
+* counted in log-linear buckets taken straight from the bits of the double
+* (exponent and top mantissa bits), so adding a value costs a shift and an
+* increment, every bucket spans less than 1% of its values, and a quantile
+* read from the middle of its bucket is within 0.4% of the true one. Sketches
+* merge by adding counts, so the result does not depend on how values were
+* split between them. Memory grows with the spread of the values, not their
+* number. Not thread-safe.
+*/
+public class QuantileSketch {
+    private static final int MANTISSA_BITS = 7;
+    private static final int SHIFT = 52 - MANTISSA_BITS;
+    private static final int INITIAL_BUCKETS = 64;
+
+    private long[] counts = new long[0];
+    private int offset;
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+    * Adds a value; values that are not positive are counted below every bucket.
+    *
+    * @param value
+    */
+    public void add(double value){
+        count++;
+        if (value < min){
+            min = value;
+        }
+        if (value > max){
+            max = value;
+        }
+        if (!(value > 0)){
+            zeroCount++;
+            return;
+        }
+        int index = bucket(value);
+        if (index < offset || index >= offset + counts.length){
+            grow(index, index);
+        }
+        counts[index - offset]++;
+    }
+
+    private static int bucket(double value){
+        return (int)(Double.doubleToRawLongBits(value) >>> SHIFT);
+    }
+
+    /**
+    * Makes room for buckets $low to $high, leaving spare buckets on the side
+    * that grew so a drifting range does not copy on every value.
+    */
+    private void grow(int low, int high){
+        if (counts.length == 0){
+            int length = Math.max(INITIAL_BUCKETS, high - low + 1);
+            counts = new long[length];
+            offset = low - (length - (high - low + 1)) / 2;
+            return;
+        }
+        int newLow = Math.min(low, offset);
+        int newHigh = Math.max(high, offset + counts.length - 1);
+        int length = Math.max(2 * counts.length, newHigh - newLow + 1);
+        int newOffset = low < offset ? newHigh - length + 1 : newLow;
+        long[] grown = new long[length];
+        System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+        counts = grown;
+        offset = newOffset;
+    }
+
+    /**
+    * Adds every value counted by $other to this sketch.
+    *
+    * @param other
+    */
+    public void merge(QuantileSketch other){
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < other.counts.length; i++){
+            if (other.counts[i] != 0){
+                if (first < 0){
+                    first = i;
+                }
+                last = i;
+            }
+        }
+        if (first >= 0){
+            int low = other.offset + first;
+            int high = other.offset + last;
+            if (low < offset || high >= offset + counts.length){
+                grow(low, high);
+            }
+            for (int i = first; i <= last; i++){
+                counts[other.offset + i - offset] += other.counts[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount(){
+        return count;
+    }
+
+    /**
+    * Estimated quantile: the middle of the bucket holding the value of rank
+    * $p * (count - 1), kept within the smallest and largest values added.
+    *
+    * @param p level in [0, 1]
+    * @return double representing estimated quantile, NaN when empty
+    */
+    public double getQuantile(double p){
+        if (count == 0){
+            return Double.NaN;
+        }
+        double rank = p * (count - 1);
+        long seen = zeroCount;
+        if (rank < seen){
+            return min;
+        }
+        for (int i = 0; i < counts.length; i++){
+            seen += counts[i];
+            if (seen > rank){
+                long index = offset + i;
+                double lower = Double.longBitsToDouble(index << SHIFT);
+                double upper = Double.longBitsToDouble((index + 1) << SHIFT);
+                return Math.max(min, Math.min(max, (lower + upper) / 2));
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,15 @@
+package markovstock;
+
+/**
+* Source of uniform random numbers used by random walks. Implementations are
+* not expected to be thread-safe; each walk should own its instance.
+*/
+public interface RandomSource {
+
+    /**
+    * Draws the next uniform value.
+    *
+    * @return double in [0, 1)
+    */
+    double nextDouble();
+}
@@ -0,0 +1,16 @@
+package markovstock;
+
+/**
+* Creates seeded RandomSource instances, so a walk can be replayed exactly from
+* its seed.
+*/
+public interface RandomSourceFactory {
+
+    /**
+    * Creates a generator whose sequence is fully determined by $seed.
+    *
+    * @param seed
+    * @return RandomSource seeded with $seed
+    */
+    RandomSource create(long seed);
+}
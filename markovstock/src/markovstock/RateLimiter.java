@@ -0,0 +1,43 @@
+package markovstock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+* Spaces out calls to at most a given number per second by handing out
+* evenly spaced time slots; callers sleep until their slot, outside any lock.
+* A rate of zero or less never waits.
+*/
+public class RateLimiter {
+    private final long intervalNanos;
+    private long nextSlot;
+
+    /**
+    * Constructor with the rate given.
+    *
+    * @param permitsPerSecond
+    */
+    public RateLimiter(double permitsPerSecond){
+        this.intervalNanos = permitsPerSecond > 0 ? (long)(1e9 / permitsPerSecond) : 0;
+        this.nextSlot = System.nanoTime();
+    }
+
+    /**
+    * Waits until the caller may go ahead.
+    *
+    * @throws InterruptedException
+    */
+    public void acquire() throws InterruptedException{
+        if (intervalNanos == 0){
+            return;
+        }
+        long now = System.nanoTime();
+        long slot;
+        synchronized (this){
+            slot = Math.max(now, nextSlot);
+            nextSlot = slot + intervalNanos;
+        }
+        if (slot > now){
+            TimeUnit.NANOSECONDS.sleep(slot - now);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package markovstock;
+
+/**
+* Walker alias tables for every row of a transition matrix. Tables are built
+* once in O(n) per row; drawing the next state then takes one uniform value,
+* constant time and no allocation, whatever the number of states.
+*/
+public class SamplingTable {
+    private final int numStates;
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+    * Constructor building alias tables from a row-stochastic matrix. Rows are
+    * normalized by their sum; a row without any probability mass (a state never
+    * observed in the data) falls back to a uniform choice of next state.
+    *
+    * @param transitions
+    */
+    public SamplingTable(double[][] transitions){
+        double[][] normalized = normalizeRows(transitions);
+        this.numStates = transitions.length;
+        this.probability = new double[numStates * numStates];
+        this.alias = new int[numStates * numStates];
+        for (int row = 0; row < numStates; row++){
+            AliasTables.build(normalized[row], 0, numStates, probability, alias, row * numStates);
+        }
+    }
+
+    /**
+    * Row-stochastic copy of $transitions: every row divided by its sum, and a
+    * row without any probability mass (a state never observed in the data)
+    * replaced by a uniform row. This is the one matrix a chain is walked,
+    * powered and analysed with: SamplingTable, MatrixPowers (and with it
+    * predictXDays), ChainAnalytics and Backtester all normalize through it.
+    *
+    * @param transitions
+    * @return double[][] representing normalized transition matrix
+    */
+    public static double[][] normalizeRows(double[][] transitions){
+        int numStates = transitions.length;
+        double[][] normalized = new double[numStates][numStates];
+        for (int i = 0; i < numStates; i++){
+            double sum = 0;
+            for (int j = 0; j < numStates; j++){
+                sum += transitions[i][j];
+            }
+            for (int j = 0; j < numStates; j++){
+                normalized[i][j] = sum > 0 ? transitions[i][j] / sum : 1.0 / numStates;
+            }
+        }
+        return normalized;
+    }
+
+    /**
+    * Chooses the next state from $currState's row.
+    *
+    * @param currState
+    * @param uniform value drawn uniformly from [0, 1)
+    * @return int representing chosen state
+    */
+    public int sample(int currState, double uniform){
+        return AliasTables.draw(uniform, currState * numStates, numStates, probability, alias);
+    }
+
+    public int getNumStates(){
+        return numStates;
+    }
+
+    double[] getProbabilities(){
+        return probability;
+    }
+
+    int[] getAliases(){
+        return alias;
+    }
+}
@@ -0,0 +1,222 @@
+package markovstock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public class SimulationEngine {
+    private static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    private final PathGenerator generator;
+    private final ExecutorService executor;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private boolean batched = true;
+
+    /**
+    * Constructor running simulations on the common fork-join pool.
+    *
+    * @param generator
+    */
+    public SimulationEngine(PathGenerator generator){
+        this(generator, ForkJoinPool.commonPool());
+    }
+
+    /**
+    * Constructor running simulations on the given executor.
+    *
+    * @param generator a MarkovChain, HigherOrderChain or other path generator
+    * @param executor
+    */
+    public SimulationEngine(PathGenerator generator, ExecutorService executor){
+        this.generator = generator;
+        this.executor = executor;
+    }
+
+    /**
+    * Sets how many paths a single task simulates before handing back to the pool.
+    *
+    * @param chunkSize
+    */
+    public void setChunkSize(int chunkSize){
+        if (chunkSize < 1){
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+    * Sets whether chains that support it are walked a block of paths at a
+    * time by BatchPathGenerator (the default) rather than path by path. Both
+    * produce identical paths.
+    *
+    * @param batched
+    */
+    public void setBatched(boolean batched){
+        this.batched = batched;
+    }
+
+    /**
+    * Simulates $numSims paths of $numDays days in parallel and returns them in
+    * memory, indexed by simulation number. Every path draws from its own
+    * generator derived from $seed and its index, so results do not depend on
+    * how many threads ran or how the paths were chunked.
+    *
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @param seed
+    * @return double[][] representing one row of prices per simulation
+    * @throws InterruptedException
+    */
+    public double[][] run(int numSims, int numDays, double startingPrice, long seed) throws InterruptedException{
+        final double[][] results = new double[numSims][];
+        run(numSims, numDays, startingPrice, seed, new SimulationSink(){
+            @Override
+            public void accept(int sim, double[] path){
+                results[sim] = path;
+            }
+        });
+        return results;
+    }
+
+    /**
+    * Simulates $numSims paths of $numDays days in parallel and hands each path
+    * to $sink as soon as it is generated, without keeping it.
+    *
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @param seed
+    * @param sink
+    * @throws InterruptedException
+    */
+    public void run(final int numSims, final int numDays, final double startingPrice, final long seed, final SimulationSink sink) throws InterruptedException{
+        long timer = Metrics.start();
+        final BatchPathGenerator batch = batched ? BatchPathGenerator.forGenerator(generator) : null;
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int start = 0; start < numSims; start += chunkSize){
+            final int from = start;
+            final int to = Math.min(numSims, start + chunkSize);
+            tasks.add(new Callable<Void>(){
+                @Override
+                public Void call(){
+                    walk(batch, from, to, numDays, startingPrice, seed, sink);
+                    return null;
+                }
+            });
+        }
+        awaitAll(executor.invokeAll(tasks));
+        Metrics.stop(Metrics.Phase.WALK, timer);
+    }
+
+    /**
+    * Simulates $numSims paths in parallel keeping only per-day summary
+    * statistics, so memory does not grow with the number of simulations.
+    *
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @param seed
+    * @return SimulationStatistics aggregated over all paths
+    * @throws InterruptedException
+    */
+    public SimulationStatistics aggregate(int numSims, int numDays, double startingPrice, long seed) throws InterruptedException{
+        return aggregate(numSims, numDays, startingPrice, seed, SimulationStatistics.forGenerator(generator, numDays, startingPrice));
+    }
+
+    /**
+    * Simulates $numSims paths in parallel into parts of $result. A task takes
+    * a part no other running task holds (making one with newPart when none is
+    * free), so paths never wait on a shared lock; at most one part per worker
+    * is made, and all are merged into $result once every path is in.
+    *
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @param seed
+    * @param result
+    * @return S $result with every path merged in
+    * @throws InterruptedException
+    */
+    public <S extends MergeableSink<S>> S aggregate(int numSims, final int numDays, final double startingPrice, final long seed, final S result) throws InterruptedException{
+        long timer = Metrics.start();
+        final BatchPathGenerator batch = batched ? BatchPathGenerator.forGenerator(generator) : null;
+        final Queue<S> parts = new ConcurrentLinkedQueue<S>();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int start = 0; start < numSims; start += chunkSize){
+            final int from = start;
+            final int to = Math.min(numSims, start + chunkSize);
+            tasks.add(new Callable<Void>(){
+                @Override
+                public Void call(){
+                    S part = parts.poll();
+                    if (part == null){
+                        part = result.newPart();
+                    }
+                    try{
+                        walk(batch, from, to, numDays, startingPrice, seed, part);
+                    }
+                    finally{
+                        parts.add(part);
+                    }
+                    return null;
+                }
+            });
+        }
+        awaitAll(executor.invokeAll(tasks));
+        for (S part: parts){
+            result.merge(part);
+        }
+        Metrics.stop(Metrics.Phase.WALK, timer);
+        return result;
+    }
+
+    private void walk(BatchPathGenerator batch, int from, int to, int numDays, double startingPrice, long seed, SimulationSink sink){
+        if (batch != null){
+            batch.generate(from, to, numDays, startingPrice, seed, sink);
+        }
+        else{
+            RandomSourceFactory randomFactory = generator.getRandomFactory();
+            for (int i = from; i < to; i++){
+                sink.accept(i, generator.predict(numDays, startingPrice, randomFactory.create(pathSeed(seed, i))));
+            }
+        }
+        Metrics.add(Metrics.Counter.PATHS, to - from);
+        Metrics.add(Metrics.Counter.STEPS, (long)(to - from) * numDays);
+    }
+
+    /**
+    * Derives the seed of a single simulation from the seed of the whole run.
+    *
+    * @param seed
+    * @param sim
+    * @return long representing seed of simulation $sim
+    */
+    public static long pathSeed(long seed, int sim){
+        return SplitMix.mix64(seed ^ SplitMix.mix64(sim + SplitMix.GOLDEN_GAMMA));
+    }
+
+    private static void awaitAll(List<Future<Void>> futures) throws InterruptedException{
+        for (Future<Void> future: futures){
+            try{
+                future.get();
+            }
+            catch (ExecutionException e){
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException){
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error){
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package markovstock;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+* Storage layout of simulated paths in the SQLite database, used by
+* SimulationWriter to create tables and bind paths to batched inserts.
+*/
+public interface SimulationLayout {
+
+    /**
+    * Creates the layout's tables and indexes if needed and prepares its insert.
+    *
+    * @param con
+    * @return PreparedStatement inserting rows of this layout
+    * @throws SQLException
+    */
+    PreparedStatement prepare(Connection con) throws SQLException;
+
+    /**
+    * Binds one path to $insertion and adds it to the current batch.
+    *
+    * @param insertion
+    * @param sim
+    * @param path
+    * @return int representing number of rows added to the batch
+    * @throws SQLException
+    */
+    int addPath(PreparedStatement insertion, int sim, double[] path) throws SQLException;
+}
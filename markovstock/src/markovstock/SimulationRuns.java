@@ -0,0 +1,224 @@
+package markovstock;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* Simulation runs kept in the normalized layout. Every run gets its own id in
+* table RUNS, and its paths stay in table PATHS until the run is deleted.
+*/
+public class SimulationRuns {
+    private final String database;
+
+    /**
+    * Constructor using the default sims.db database.
+    */
+    public SimulationRuns(){
+        this("sims.db");
+    }
+
+    /**
+    * Constructor with database file given.
+    *
+    * @param database
+    */
+    public SimulationRuns(String database){
+        this.database = database;
+    }
+
+    /**
+    * Creates RUNS and PATHS tables and their indexes if they do not exist.
+    *
+    * @param con
+    * @throws SQLException
+    */
+    public static void createTables(Connection con) throws SQLException{
+        Statement statement = con.createStatement();
+        statement.executeUpdate("CREATE TABLE IF NOT EXISTS RUNS (" +
+        "RUN_ID INTEGER PRIMARY KEY AUTOINCREMENT, " +
+        "SYMBOL TEXT NOT NULL, " +
+        "CREATED INTEGER NOT NULL, " +
+        "NUM_SIMS INT NOT NULL, " +
+        "NUM_DAYS INT NOT NULL, " +
+        "STARTING_PRICE DOUBLE PRECISION NOT NULL, " +
+        "SEED INTEGER NOT NULL);");
+        statement.executeUpdate("CREATE INDEX IF NOT EXISTS RUNS_BY_SYMBOL ON RUNS (SYMBOL, RUN_ID);");
+        statement.executeUpdate("CREATE TABLE IF NOT EXISTS PATHS (" +
+        "RUN_ID INTEGER NOT NULL, " +
+        "SYMBOL TEXT NOT NULL, " +
+        "SIM INT NOT NULL, " +
+        "DAY INT NOT NULL, " +
+        "PRICE DOUBLE PRECISION NOT NULL, " +
+        "PRIMARY KEY (RUN_ID, SIM, DAY)) WITHOUT ROWID;");
+        statement.executeUpdate("CREATE INDEX IF NOT EXISTS PATHS_BY_DAY ON PATHS (RUN_ID, DAY);");
+        statement.close();
+    }
+
+    /**
+    * Registers a new run and returns its id.
+    *
+    * @param sym
+    * @param numSims
+    * @param numDays
+    * @param startingPrice
+    * @param seed
+    * @return long representing id of the new run
+    * @throws ClassNotFoundException
+    * @throws SQLException
+    */
+    public long createRun(String sym, int numSims, int numDays, double startingPrice, long seed) throws ClassNotFoundException, SQLException{
+        Connection con = connect();
+        try{
+            createTables(con);
+            PreparedStatement insertion = con.prepareStatement("INSERT INTO RUNS " +
+            "(SYMBOL, CREATED, NUM_SIMS, NUM_DAYS, STARTING_PRICE, SEED) VALUES (?, ?, ?, ?, ?, ?);");
+            insertion.setString(1, sym.toUpperCase());
+            insertion.setLong(2, System.currentTimeMillis());
+            insertion.setInt(3, numSims);
+            insertion.setInt(4, numDays);
+            insertion.setDouble(5, startingPrice);
+            insertion.setLong(6, seed);
+            insertion.executeUpdate();
+            ResultSet key = con.createStatement().executeQuery("SELECT last_insert_rowid();");
+            key.next();
+            return key.getLong(1);
+        }
+        finally{
+            con.close();
+        }
+    }
+
+    /**
+    * Lists ids of all runs stored for a symbol, oldest first.
+    *
+    * @param sym
+    * @return List of run ids
+    * @throws ClassNotFoundException
+    * @throws SQLException
+    */
+    public List<Long> listRuns(String sym) throws ClassNotFoundException, SQLException{
+        Connection con = connect();
+        try{
+            createTables(con);
+            PreparedStatement query = con.prepareStatement("SELECT RUN_ID FROM RUNS WHERE SYMBOL = ? ORDER BY RUN_ID;");
+            query.setString(1, sym.toUpperCase());
+            ResultSet results = query.executeQuery();
+            List<Long> runs = new ArrayList<Long>();
+            while (results.next()){
+                runs.add(results.getLong(1));
+            }
+            return runs;
+        }
+        finally{
+            con.close();
+        }
+    }
+
+    /**
+    * Reads every path of a run, indexed by simulation number.
+    *
+    * @param runId
+    * @return double[][] representing one row of prices per simulation
+    * @throws ClassNotFoundException
+    * @throws SQLException
+    */
+    public double[][] readPaths(long runId) throws ClassNotFoundException, SQLException{
+        Connection con = connect();
+        try{
+            PreparedStatement query = con.prepareStatement("SELECT NUM_SIMS, NUM_DAYS FROM RUNS WHERE RUN_ID = ?;");
+            query.setLong(1, runId);
+            ResultSet run = query.executeQuery();
+            if (!run.next()){
+                throw new SQLException("No simulation run " + runId);
+            }
+            double[][] paths = new double[run.getInt(1)][run.getInt(2)];
+            query = con.prepareStatement("SELECT SIM, DAY, PRICE FROM PATHS WHERE RUN_ID = ?;");
+            query.setLong(1, runId);
+            ResultSet results = query.executeQuery();
+            while (results.next()){
+                paths[results.getInt(1) - 1][results.getInt(2) - 1] = results.getDouble(3);
+            }
+            return paths;
+        }
+        finally{
+            con.close();
+        }
+    }
+
+    /**
+    * Reads the prices of all simulations of a run on a single day.
+    *
+    * @param runId
+    * @param day day number, starting at 1
+    * @return double[] representing the day's cross-section, in simulation order
+    * @throws ClassNotFoundException
+    * @throws SQLException
+    */
+    public double[] readDay(long runId, int day) throws ClassNotFoundException, SQLException{
+        Connection con = connect();
+        try{
+            PreparedStatement query = con.prepareStatement("SELECT NUM_SIMS FROM RUNS WHERE RUN_ID = ?;");
+            query.setLong(1, runId);
+            ResultSet run = query.executeQuery();
+            if (!run.next()){
+                throw new SQLException("No simulation run " + runId);
+            }
+            double[] prices = new double[run.getInt(1)];
+            query = con.prepareStatement("SELECT SIM, PRICE FROM PATHS WHERE RUN_ID = ? AND DAY = ?;");
+            query.setLong(1, runId);
+            query.setInt(2, day);
+            ResultSet results = query.executeQuery();
+            while (results.next()){
+                prices[results.getInt(1) - 1] = results.getDouble(2);
+            }
+            return prices;
+        }
+        finally{
+            con.close();
+        }
+    }
+
+    /**
+    * Deletes a run and all of its paths.
+    *
+    * @param runId
+    * @throws ClassNotFoundException
+    * @throws SQLException
+    */
+    public void deleteRun(long runId) throws ClassNotFoundException, SQLException{
+        Connection con = connect();
+        try{
+            createTables(con);
+            con.setAutoCommit(false);
+            PreparedStatement deletion = con.prepareStatement("DELETE FROM PATHS WHERE RUN_ID = ?;");
+            deletion.setLong(1, runId);
+            deletion.executeUpdate();
+            deletion = con.prepareStatement("DELETE FROM RUNS WHERE RUN_ID = ?;");
+            deletion.setLong(1, runId);
+            deletion.executeUpdate();
+            con.commit();
+        }
+        finally{
+            con.close();
+        }
+    }
+
+    public String getDatabase(){
+        return database;
+    }
+
+    private Connection connect() throws ClassNotFoundException, SQLException{
+        Class.forName("org.sqlite.JDBC");
+        Connection con = DriverManager.getConnection("jdbc:sqlite:" + database);
+        Statement statement = con.createStatement();
+        statement.execute("PRAGMA busy_timeout=" + SimulationWriter.BUSY_TIMEOUT_MILLIS + ";");
+        statement.close();
+        return con;
+    }
+}
@@ -0,0 +1,17 @@
+package markovstock;
+
+/**
+* Receives simulated paths as the engine produces them. Paths arrive from
+* several worker threads at once and in no particular order, so
+* implementations must be thread-safe.
+*/
+public interface SimulationSink {
+
+    /**
+    * Consumes one simulated path.
+    *
+    * @param sim index of the simulation within the run
+    * @param path simulated prices, one per day
+    */
+    void accept(int sim, double[] path);
+}
@@ -0,0 +1,304 @@
+package markovstock;
+
+/**
+* Aggregates simulated paths as they are generated, so they never have to be
+* stored. Keeps per-day running mean and variance (Welford), min, max and a
+* QuantileSketch, plus a log-spaced histogram of final-day prices for
+* value-at-risk, expected shortfall and threshold probabilities. Memory grows
+* with the number of days, not the number of simulations.
+*
+* Everything kept can be merged, so SimulationEngine.aggregate fills one part
+* per task and merges the parts at the end instead of every path waiting on a
+* single lock.
+*/
+public class SimulationStatistics implements MergeableSink<SimulationStatistics> {
+    public static final double[] DEFAULT_QUANTILES = {0.05, 0.25, 0.5, 0.75, 0.95};
+    private static final int FINAL_BINS = 16384;
+
+    private final int numDays;
+    private final double startingPrice;
+    private final double[] levels;
+    private final double[] mean;
+    private final double[] m2;
+    private final double[] min;
+    private final double[] max;
+    private final QuantileSketch[] sketches;
+    private final double logLower;
+    private final double binWidth;
+    private final long[] finalCounts = new long[FINAL_BINS];
+    private final double[] finalSums = new double[FINAL_BINS];
+    private long count;
+
+    /**
+    * Constructor with the range of final-day prices given; prices outside the
+    * range still count, in the outermost bins.
+    *
+    * @param numDays
+    * @param startingPrice
+    * @param minPrice lowest final-day price expected, must be positive
+    * @param maxPrice highest final-day price expected
+    * @param levels quantile levels tracked for every day
+    */
+    public SimulationStatistics(int numDays, double startingPrice, double minPrice, double maxPrice, double[] levels){
+        this(numDays, startingPrice, levels, Math.log(minPrice), Math.max(Math.log(maxPrice) - Math.log(minPrice), 1e-9) / FINAL_BINS);
+        for (double level: levels){
+            if (level < 0 || level > 1){
+                throw new IllegalArgumentException("Quantile level must be in [0, 1]: " + level);
+            }
+        }
+    }
+
+    private SimulationStatistics(int numDays, double startingPrice, double[] levels, double logLower, double binWidth){
+        this.numDays = numDays;
+        this.startingPrice = startingPrice;
+        this.levels = levels.clone();
+        this.mean = new double[numDays];
+        this.m2 = new double[numDays];
+        this.min = new double[numDays];
+        this.max = new double[numDays];
+        this.sketches = new QuantileSketch[numDays];
+        for (int day = 0; day < numDays; day++){
+            min[day] = Double.POSITIVE_INFINITY;
+            max[day] = Double.NEGATIVE_INFINITY;
+            sketches[day] = new QuantileSketch();
+        }
+        this.logLower = logLower;
+        this.binWidth = binWidth;
+    }
+
+    /**
+    * Creates statistics whose final-day range covers every price the chain can
+    * reach: a day moves the price by at most twice the chain's average change.
+    *
+    * @param chain
+    * @param numDays
+    * @param startingPrice
+    * @return SimulationStatistics with default quantile levels
+    */
+    public static SimulationStatistics forChain(MarkovChain chain, int numDays, double startingPrice){
+        return forGenerator(chain, numDays, startingPrice);
+    }
+
+    /**
+    * Creates statistics whose final-day range covers every price the generator
+    * can reach, given its largest daily change.
+    *
+    * @param generator
+    * @param numDays
+    * @param startingPrice
+    * @return SimulationStatistics with default quantile levels
+    */
+    public static SimulationStatistics forGenerator(PathGenerator generator, int numDays, double startingPrice){
+        double maxMove = generator.getMaxDailyChange() / 100;
+        double maxPrice = startingPrice * Math.pow(1 + maxMove, numDays);
+        double minPrice = startingPrice * Math.pow(Math.max(1 - maxMove, 1e-3), numDays);
+        return new SimulationStatistics(numDays, startingPrice, Math.max(minPrice, Double.MIN_NORMAL), maxPrice, DEFAULT_QUANTILES);
+    }
+
+    @Override
+    public synchronized void accept(int sim, double[] path){
+        count++;
+        for (int day = 0; day < numDays; day++){
+            double price = path[day];
+            double delta = price - mean[day];
+            mean[day] += delta / count;
+            m2[day] += delta * (price - mean[day]);
+            if (price < min[day]){
+                min[day] = price;
+            }
+            if (price > max[day]){
+                max[day] = price;
+            }
+            sketches[day].add(price);
+        }
+        if (numDays > 0){
+            double last = path[numDays - 1];
+            int bin = finalBin(last);
+            finalCounts[bin]++;
+            finalSums[bin] += last;
+        }
+    }
+
+    /**
+    * Empty statistics over the same days, levels and final-day range.
+    *
+    * @return SimulationStatistics with no simulations
+    */
+    @Override
+    public SimulationStatistics newPart(){
+        return new SimulationStatistics(numDays, startingPrice, levels, logLower, binWidth);
+    }
+
+    /**
+    * Adds the simulations of $part, which must come from newPart, combining
+    * means and variances with the parallel form of Welford's update.
+    *
+    * @param part
+    */
+    @Override
+    public synchronized void merge(SimulationStatistics part){
+        if (part.numDays != numDays || part.binWidth != binWidth || part.logLower != logLower){
+            throw new IllegalArgumentException("Statistics cover different days or price ranges");
+        }
+        synchronized (part){
+            if (part.count == 0){
+                return;
+            }
+            long total = count + part.count;
+            for (int day = 0; day < numDays; day++){
+                double delta = part.mean[day] - mean[day];
+                mean[day] += delta * part.count / total;
+                m2[day] += part.m2[day] + delta * delta * ((double) count * part.count / total);
+                min[day] = Math.min(min[day], part.min[day]);
+                max[day] = Math.max(max[day], part.max[day]);
+                sketches[day].merge(part.sketches[day]);
+            }
+            for (int bin = 0; bin < FINAL_BINS; bin++){
+                finalCounts[bin] += part.finalCounts[bin];
+                finalSums[bin] += part.finalSums[bin];
+            }
+            count = total;
+        }
+    }
+
+    private int finalBin(double price){
+        double position = (Math.log(price) - logLower) / binWidth;
+        if (!(position >= 0)){
+            return 0;
+        }
+        return (int) Math.min(FINAL_BINS - 1, position);
+    }
+
+    public synchronized long getCount(){
+        return count;
+    }
+
+    public int getNumDays(){
+        return numDays;
+    }
+
+    public double getStartingPrice(){
+        return startingPrice;
+    }
+
+    public double[] getLevels(){
+        return levels.clone();
+    }
+
+    public synchronized double getMean(int day){
+        return mean[day];
+    }
+
+    /**
+    * Sample variance of simulated prices on a day.
+    *
+    * @param day
+    * @return double representing variance, NaN for fewer than two simulations
+    */
+    public synchronized double getVariance(int day){
+        return count > 1 ? m2[day] / (count - 1) : Double.NaN;
+    }
+
+    public double getStandardDeviation(int day){
+        return Math.sqrt(getVariance(day));
+    }
+
+    public synchronized double getMin(int day){
+        return min[day];
+    }
+
+    public synchronized double getMax(int day){
+        return max[day];
+    }
+
+    /**
+    * Estimated quantile of simulated prices on a day.
+    *
+    * @param day
+    * @param levelIndex index into the tracked quantile levels
+    * @return double representing estimated quantile
+    */
+    public synchronized double getQuantile(int day, int levelIndex){
+        return sketches[day].getQuantile(levels[levelIndex]);
+    }
+
+    /**
+    * Quantile of final-day prices read from the histogram, interpolated within a bin.
+    *
+    * @param p
+    * @return double representing final-day price quantile
+    */
+    public synchronized double getFinalQuantile(double p){
+        long target = (long) Math.ceil(p * count);
+        long seen = 0;
+        for (int bin = 0; bin < FINAL_BINS; bin++){
+            if (finalCounts[bin] > 0 && seen + finalCounts[bin] >= target){
+                double fraction = (target - seen) / (double) finalCounts[bin];
+                return Math.exp(logLower + (bin + fraction) * binWidth);
+            }
+            seen += finalCounts[bin];
+        }
+        return Double.NaN;
+    }
+
+    /**
+    * Loss from the starting price not exceeded with probability $confidence at
+    * the end of the horizon.
+    *
+    * @param confidence e.g. 0.95
+    * @return double representing value-at-risk per share
+    */
+    public double getValueAtRisk(double confidence){
+        return startingPrice - getFinalQuantile(1 - confidence);
+    }
+
+    /**
+    * Average loss from the starting price over the worst (1 - $confidence) of
+    * final-day outcomes.
+    *
+    * @param confidence e.g. 0.95
+    * @return double representing expected shortfall per share
+    */
+    public synchronized double getExpectedShortfall(double confidence){
+        double tail = (1 - confidence) * count;
+        if (tail <= 0){
+            return Double.NaN;
+        }
+        double remaining = tail;
+        double sum = 0;
+        for (int bin = 0; bin < FINAL_BINS && remaining > 0; bin++){
+            if (finalCounts[bin] == 0){
+                continue;
+            }
+            double taken = Math.min(remaining, finalCounts[bin]);
+            sum += taken * (finalSums[bin] / finalCounts[bin]);
+            remaining -= taken;
+        }
+        return startingPrice - sum / (tail - remaining);
+    }
+
+    /**
+    * Fraction of simulations whose final-day price is above $threshold, at the
+    * resolution of the histogram.
+    *
+    * @param threshold
+    * @return double representing probability
+    */
+    public synchronized double getProbabilityAbove(double threshold){
+        if (count == 0){
+            return Double.NaN;
+        }
+        int thresholdBin = finalBin(threshold);
+        long above = 0;
+        for (int bin = thresholdBin + 1; bin < FINAL_BINS; bin++){
+            above += finalCounts[bin];
+        }
+        if (finalCounts[thresholdBin] > 0){
+            double binStart = Math.exp(logLower + thresholdBin * binWidth);
+            double binEnd = Math.exp(logLower + (thresholdBin + 1) * binWidth);
+            double fraction = (binEnd - threshold) / (binEnd - binStart);
+            above += Math.round(finalCounts[thresholdBin] * Math.max(0, Math.min(1, fraction)));
+        }
+        return above / (double) count;
+    }
+}
@@ -0,0 +1,242 @@
+package markovstock;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+* Persists simulated paths to the SQLite database from a dedicated writer
+* thread. Simulation threads only enqueue paths; the writer drains the queue
+* and groups inserts into batches, committing one transaction per batch
+* instead of one per row.
+*/
+public class SimulationWriter implements SimulationSink {
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    /** How long a connection waits on another writer's lock before failing. */
+    static final int BUSY_TIMEOUT_MILLIS = 30000;
+    private static final Row END = new Row(-1, null);
+
+    private final String database;
+    private final SimulationLayout layout;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private boolean walMode = false;
+    private String synchronous = null;
+    private int cacheSizeKb = 0;
+
+    private BlockingQueue<Row> queue;
+    private Connection con;
+    private Thread writerThread;
+    private volatile Throwable failure;
+    private long rowsWritten;
+
+    /**
+    * Constructor writing table SIMULATION<SYM> of the default sims.db database.
+    *
+    * @param sym
+    * @param numDays
+    */
+    public SimulationWriter(String sym, int numDays){
+        this("sims.db", new WideSimulationLayout(sym, numDays));
+    }
+
+    /**
+    * Constructor with database file and storage layout given.
+    *
+    * @param database
+    * @param layout
+    */
+    public SimulationWriter(String database, SimulationLayout layout){
+        this.database = database;
+        this.layout = layout;
+    }
+
+    /**
+    * Sets how many rows are inserted per executeBatch and committed per
+    * transaction; a batch is flushed once it holds at least this many rows.
+    *
+    * @param batchSize
+    */
+    public void setBatchSize(int batchSize){
+        if (batchSize < 1){
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+    * Sets how many paths may wait for the writer before simulation threads block.
+    *
+    * @param queueCapacity
+    */
+    public void setQueueCapacity(int queueCapacity){
+        if (queueCapacity < 1){
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+    * Switches the database to write-ahead logging when opened.
+    *
+    * @param walMode
+    */
+    public void setWalMode(boolean walMode){
+        this.walMode = walMode;
+    }
+
+    /**
+    * Sets PRAGMA synchronous (OFF, NORMAL or FULL) when opened; null leaves the
+    * database default.
+    *
+    * @param synchronous
+    */
+    public void setSynchronous(String synchronous){
+        this.synchronous = synchronous;
+    }
+
+    /**
+    * Sets the page cache used while writing, in KiB; 0 leaves the database
+    * default. A larger cache keeps secondary indexes in memory during bulk loads.
+    *
+    * @param cacheSizeKb
+    */
+    public void setCacheSize(int cacheSizeKb){
+        this.cacheSizeKb = cacheSizeKb;
+    }
+
+    /**
+    * Opens the database, creates the layout's tables and starts the writer thread.
+    *
+    * @throws ClassNotFoundException
+    * @throws SQLException
+    */
+    public void open() throws ClassNotFoundException, SQLException{
+        Class.forName("org.sqlite.JDBC");
+        con = DriverManager.getConnection("jdbc:sqlite:" + database);
+        Statement statement = con.createStatement();
+        statement.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MILLIS + ";");
+        if (walMode){
+            statement.execute("PRAGMA journal_mode=WAL;");
+        }
+        if (synchronous != null){
+            statement.execute("PRAGMA synchronous=" + synchronous + ";");
+        }
+        if (cacheSizeKb > 0){
+            statement.execute("PRAGMA cache_size=-" + cacheSizeKb + ";");
+        }
+        statement.close();
+        final PreparedStatement insertion = layout.prepare(con);
+        con.setAutoCommit(false);
+        queue = new ArrayBlockingQueue<Row>(queueCapacity);
+        writerThread = new Thread(new Runnable(){
+            @Override
+            public void run(){
+                drain(insertion);
+            }
+        }, "SimulationWriter");
+        writerThread.start();
+    }
+
+    /**
+    * Queues a path for writing, blocking while the queue is full.
+    *
+    * @param sim
+    * @param path
+    */
+    @Override
+    public void accept(int sim, double[] path){
+        Row row = new Row(sim, path);
+        try{
+            while (!queue.offer(row, 100, TimeUnit.MILLISECONDS)){
+                checkFailure();
+            }
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing simulation " + sim, e);
+        }
+        checkFailure();
+    }
+
+    /**
+    * Waits for every queued path to be written, commits and closes the database.
+    * If the writer thread has failed, its failure is thrown instead.
+    *
+    * @return long representing number of rows written
+    * @throws SQLException
+    * @throws InterruptedException
+    */
+    public long close() throws SQLException, InterruptedException{
+        try{
+            boolean ended = false;
+            while (failure == null && !ended){
+                ended = queue.offer(END, 100, TimeUnit.MILLISECONDS);
+            }
+            writerThread.join();
+        }
+        finally{
+            con.close();
+        }
+        if (failure instanceof SQLException){
+            throw (SQLException) failure;
+        }
+        if (failure != null){
+            throw new SQLException("Simulation writer failed", failure);
+        }
+        return rowsWritten;
+    }
+
+    private void drain(PreparedStatement insertion){
+        try{
+            int pending = 0;
+            Row row;
+            while ((row = queue.take()) != END){
+                pending += layout.addPath(insertion, row.sim, row.path);
+                if (pending >= batchSize){
+                    commit(insertion, pending);
+                    pending = 0;
+                }
+            }
+            if (pending > 0){
+                commit(insertion, pending);
+            }
+            insertion.close();
+        }
+        catch (SQLException | InterruptedException | RuntimeException | Error e){
+            failure = e;
+            queue.clear();
+        }
+    }
+
+    private void commit(PreparedStatement insertion, int pending) throws SQLException{
+        long timer = Metrics.start();
+        insertion.executeBatch();
+        con.commit();
+        rowsWritten += pending;
+        Metrics.add(Metrics.Counter.ROWS_WRITTEN, pending);
+        Metrics.stop(Metrics.Phase.PERSIST, timer);
+    }
+
+    private void checkFailure(){
+        if (failure != null){
+            throw new IllegalStateException("Simulation writer failed", failure);
+        }
+    }
+
+    private static class Row {
+        private final int sim;
+        private final double[] path;
+
+        private Row(int sim, double[] path){
+            this.sim = sim;
+            this.path = path;
+        }
+    }
+}
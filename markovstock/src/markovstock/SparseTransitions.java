@@ -0,0 +1,195 @@
+package markovstock;
+
+import java.util.Arrays;
+
+/**
+* Transition counts stored in compressed sparse rows: only histories that were
+* observed get a row, and a row only holds the next states that followed it.
+* Rows are found by their history key through an open-addressing hash table,
+* and every row carries Walker alias tables over its own entries, so memory
+* grows with the number of observed transitions and a draw is constant time
+* however many states the chain has.
+*/
+public class SparseTransitions {
+    private final int numStates;
+    private final long[] rowKeys;
+    private final int[] rowStart;
+    private final int[] columns;
+    private final double[] probability;
+    private final double[] aliasProbability;
+    private final int[] alias;
+    private final long[] hashKeys;
+    private final int[] hashRows;
+    private final int hashMask;
+    private final double[] rowAliasProbability;
+    private final int[] rowAlias;
+    private final double[] marginalAliasProbability;
+    private final int[] marginalAlias;
+
+    /**
+    * Constructor from observed transitions, each packed as
+    * history * numStates + next state and sorted ascending; repeated codes
+    * are counted.
+    *
+    * @param numStates
+    * @param sortedCodes
+    * @param length number of codes used from $sortedCodes
+    */
+    public SparseTransitions(int numStates, long[] sortedCodes, int length){
+        this.numStates = numStates;
+        int numRows = 0;
+        int nonZeros = 0;
+        for (int i = 0; i < length; i++){
+            if (i == 0 || sortedCodes[i] != sortedCodes[i-1]){
+                nonZeros++;
+                if (i == 0 || sortedCodes[i] / numStates != sortedCodes[i-1] / numStates){
+                    numRows++;
+                }
+            }
+        }
+        this.rowKeys = new long[numRows];
+        this.rowStart = new int[numRows + 1];
+        this.columns = new int[nonZeros];
+        double[] counts = new double[nonZeros];
+        double[] rowCounts = new double[numRows];
+        double[] marginalCounts = new double[numStates];
+        int row = -1;
+        int entry = -1;
+        for (int i = 0; i < length; i++){
+            long key = sortedCodes[i] / numStates;
+            int column = (int)(sortedCodes[i] % numStates);
+            if (row < 0 || key != rowKeys[row]){
+                row++;
+                rowKeys[row] = key;
+                rowStart[row] = entry + 1;
+            }
+            if (entry < rowStart[row] || columns[entry] != column){
+                entry++;
+                columns[entry] = column;
+            }
+            counts[entry]++;
+            rowCounts[row]++;
+            marginalCounts[column]++;
+        }
+        rowStart[numRows] = nonZeros;
+
+        this.probability = new double[nonZeros];
+        this.aliasProbability = new double[nonZeros];
+        this.alias = new int[nonZeros];
+        for (int r = 0; r < numRows; r++){
+            int start = rowStart[r];
+            int size = rowStart[r+1] - start;
+            for (int k = start; k < start + size; k++){
+                probability[k] = counts[k] / rowCounts[r];
+            }
+            AliasTables.build(counts, start, size, aliasProbability, alias, start);
+        }
+        this.rowAliasProbability = new double[numRows];
+        this.rowAlias = new int[numRows];
+        AliasTables.build(rowCounts, 0, numRows, rowAliasProbability, rowAlias, 0);
+        this.marginalAliasProbability = new double[numStates];
+        this.marginalAlias = new int[numStates];
+        AliasTables.build(marginalCounts, 0, numStates, marginalAliasProbability, marginalAlias, 0);
+
+        int capacity = Integer.highestOneBit(Math.max(2 * numRows, 2) - 1) << 1;
+        this.hashKeys = new long[capacity];
+        this.hashRows = new int[capacity];
+        this.hashMask = capacity - 1;
+        Arrays.fill(hashRows, -1);
+        for (int r = 0; r < numRows; r++){
+            int slot = slot(rowKeys[r]);
+            while (hashRows[slot] >= 0){
+                slot = (slot + 1) & hashMask;
+            }
+            hashKeys[slot] = rowKeys[r];
+            hashRows[slot] = r;
+        }
+    }
+
+    private int slot(long key){
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int)(hash ^ (hash >>> 32)) & hashMask;
+    }
+
+    /**
+    * Finds the row of a history.
+    *
+    * @param key
+    * @return int representing row index, -1 if the history was never observed
+    */
+    public int findRow(long key){
+        int slot = slot(key);
+        while (hashRows[slot] >= 0){
+            if (hashKeys[slot] == key){
+                return hashRows[slot];
+            }
+            slot = (slot + 1) & hashMask;
+        }
+        return -1;
+    }
+
+    /**
+    * Chooses the next state from a row.
+    *
+    * @param row
+    * @param uniform value drawn uniformly from [0, 1)
+    * @return int representing chosen state
+    */
+    public int sample(int row, double uniform){
+        int start = rowStart[row];
+        return columns[start + AliasTables.draw(uniform, start, rowStart[row+1] - start, aliasProbability, alias)];
+    }
+
+    /**
+    * Chooses a row with probability proportional to how often its history
+    * was observed.
+    *
+    * @param uniform value drawn uniformly from [0, 1)
+    * @return int representing row index
+    */
+    public int sampleRow(double uniform){
+        return AliasTables.draw(uniform, 0, rowKeys.length, rowAliasProbability, rowAlias);
+    }
+
+    /**
+    * Chooses a next state ignoring history, by how often it was observed overall.
+    *
+    * @param uniform value drawn uniformly from [0, 1)
+    * @return int representing chosen state
+    */
+    public int sampleMarginal(double uniform){
+        return AliasTables.draw(uniform, 0, numStates, marginalAliasProbability, marginalAlias);
+    }
+
+    /**
+    * Estimated probability of moving to $column after history $key.
+    *
+    * @param key
+    * @param column
+    * @return double representing transition probability, 0 if never observed
+    */
+    public double getProbability(long key, int column){
+        int row = findRow(key);
+        if (row < 0){
+            return 0;
+        }
+        int index = Arrays.binarySearch(columns, rowStart[row], rowStart[row+1], column);
+        return index < 0 ? 0 : probability[index];
+    }
+
+    public long getRowKey(int row){
+        return rowKeys[row];
+    }
+
+    public int getNumRows(){
+        return rowKeys.length;
+    }
+
+    public int getNonZeros(){
+        return columns.length;
+    }
+
+    public int getNumStates(){
+        return numStates;
+    }
+}
@@ -0,0 +1,38 @@
+package markovstock;
+
+/**
+* SplitMix64 (Steele, Lea and Flood), the mixing function behind
+* SplittableRandom. Shared by the seed derivation of SimulationEngine, the
+* state expansion of XoshiroRandom and the inlined generator of
+* BatchPathGenerator.
+*/
+final class SplitMix {
+    static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private SplitMix(){
+    }
+
+    /**
+    * Mixes the bits of $z.
+    *
+    * @param z
+    * @return long representing mixed value
+    */
+    static long mix64(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+    * SplittableRandom.nextDouble for the seed after advancing: the seed is
+    * mixed and its top 53 bits scaled to [0, 1).
+    *
+    * @param seed
+    * @return double in [0, 1)
+    */
+    static double toDouble(long seed){
+        return (mix64(seed) >>> 11) * DOUBLE_UNIT;
+    }
+}
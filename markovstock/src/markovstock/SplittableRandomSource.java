@@ -0,0 +1,28 @@
+package markovstock;
+
+import java.util.SplittableRandom;
+
+public class SplittableRandomSource implements RandomSource {
+    public static final RandomSourceFactory FACTORY = new RandomSourceFactory(){
+        @Override
+        public RandomSource create(long seed){
+            return new SplittableRandomSource(seed);
+        }
+    };
+
+    private final SplittableRandom random;
+
+    /**
+    * Constructor with seed given.
+    *
+    * @param seed
+    */
+    public SplittableRandomSource(long seed){
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public double nextDouble(){
+        return random.nextDouble();
+    }
+}
@@ -0,0 +1,41 @@
+package markovstock;
+
+/**
+* Mergeable sink that hands every path to a part of a mergeable target and
+* to one shared sink, e.g. a SimulationWriter, so SimulationEngine.aggregate
+* can fill the target while paths are also stored. The shared sink is given
+* paths from several tasks at once and must allow it.
+*
+* @param <S> the type of the target
+*/
+final class TeeSink<S extends MergeableSink<S>> implements MergeableSink<TeeSink<S>> {
+    private final S target;
+    private final SimulationSink shared;
+
+    /**
+    * Constructor with the target to fill and the sink every path also goes to.
+    *
+    * @param target
+    * @param shared
+    */
+    TeeSink(S target, SimulationSink shared){
+        this.target = target;
+        this.shared = shared;
+    }
+
+    @Override
+    public void accept(int sim, double[] path){
+        shared.accept(sim, path);
+        target.accept(sim, path);
+    }
+
+    @Override
+    public TeeSink<S> newPart(){
+        return new TeeSink<S>(target.newPart(), shared);
+    }
+
+    @Override
+    public void merge(TeeSink<S> part){
+        target.merge(part.target);
+    }
+}
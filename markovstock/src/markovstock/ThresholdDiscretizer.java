@@ -0,0 +1,87 @@
+package markovstock;
+
+/**
+* The original five states: small up, large up, small down, large down and no
+* change, split by the average absolute change (see ParseData.classifyDifference).
+* A step in a small state moves by up to the average change and a step in a
+* large state by between one and two average changes; no change draws nothing.
+*/
+public class ThresholdDiscretizer implements UniformDiscretizer {
+    private final double averageChange;
+
+    /**
+    * Constructor with average absolute percent change given.
+    *
+    * @param averageChange
+    */
+    public ThresholdDiscretizer(double averageChange){
+        this.averageChange = averageChange;
+    }
+
+    @Override
+    public int getNumStates(){
+        return 5;
+    }
+
+    @Override
+    public int classify(double change){
+        return ParseData.classifyDifference(change, averageChange);
+    }
+
+    @Override
+    public double sampleChange(int state, RandomSource random){
+        if (state == 0){
+            return random.nextDouble() * averageChange;
+        }
+        else if (state == 1){
+            return averageChange + (random.nextDouble() * averageChange);
+        }
+        else if (state == 2){
+            return -(random.nextDouble() * averageChange);
+        }
+        else if (state == 3){
+            return -(averageChange + (random.nextDouble() * averageChange));
+        }
+        return 0;
+    }
+
+    /**
+    * Written so that getBase + getWidth * u gives exactly the value
+    * sampleChange computes for the same u.
+    */
+    @Override
+    public double getBase(int state){
+        if (state == 1){
+            return averageChange;
+        }
+        else if (state == 3){
+            return -averageChange;
+        }
+        return 0;
+    }
+
+    @Override
+    public double getWidth(int state){
+        if (state == 0 || state == 1){
+            return averageChange;
+        }
+        else if (state == 2 || state == 3){
+            return -averageChange;
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean drawsChange(int state){
+        return state != 4;
+    }
+
+    @Override
+    public double getMaxChange(){
+        return 2 * averageChange;
+    }
+
+    public double getAverageChange(){
+        return averageChange;
+    }
+}
@@ -0,0 +1,36 @@
+package markovstock;
+
+/**
+* Discretizer whose steps are uniform within each state: sampleChange returns
+* getBase(state) + getWidth(state) * random.nextDouble(), or just
+* getBase(state) without drawing for a state where drawsChange is false. Such
+* a discretizer can be tabulated, which lets BatchPathGenerator step many
+* paths at once with table lookups instead of calls and branches.
+*/
+public interface UniformDiscretizer extends Discretizer {
+
+    /**
+    * Smallest percent change of $state.
+    *
+    * @param state
+    * @return double representing lower end of the state's changes
+    */
+    double getBase(int state);
+
+    /**
+    * Width of the range of percent changes of $state; may be negative, in
+    * which case changes run down from getBase.
+    *
+    * @param state
+    * @return double representing width of the state's changes
+    */
+    double getWidth(int state);
+
+    /**
+    * Whether a step in $state draws a random number.
+    *
+    * @param state
+    * @return boolean representing whether sampleChange consumes a draw
+    */
+    boolean drawsChange(int state);
+}
@@ -0,0 +1,64 @@
+package markovstock;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.time.LocalDate;
+
+/**
+* Fetches CSV history over HTTP from an endpoint speaking the Yahoo Finance
+* table.csv protocol: the symbol is appended to a URL prefix and a start date
+* is given as a= (month - 1), b= (day) and c= (year). Pointing the prefix at
+* a local server lets the fetch stage run without the real service.
+*/
+public class UrlHistorySource implements HistorySource {
+    public static final UrlHistorySource YAHOO = new UrlHistorySource("http://ichart.finance.yahoo.com/table.csv?s=");
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 30000;
+
+    private final String prefix;
+    private volatile int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private volatile int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+
+    /**
+    * Constructor with the URL prefix the symbol is appended to given.
+    *
+    * @param prefix e.g. http://localhost:8080/table.csv?s=
+    */
+    public UrlHistorySource(String prefix){
+        this.prefix = prefix;
+    }
+
+    @Override
+    public PriceHistory fetch(String symbol, LocalDate from) throws IOException{
+        String url = prefix + symbol;
+        if (from != null){
+            url += "&a=" + (from.getMonthValue() - 1) + "&b=" + from.getDayOfMonth() + "&c=" + from.getYear();
+        }
+        long timer = Metrics.start();
+        URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        InputStream csv = connection.getInputStream();
+        try{
+            return PriceHistoryLoader.read(csv, symbol);
+        }
+        finally{
+            csv.close();
+            Metrics.stop(Metrics.Phase.FETCH, timer);
+        }
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis){
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public void setReadTimeoutMillis(int readTimeoutMillis){
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    public String getPrefix(){
+        return prefix;
+    }
+}
@@ -0,0 +1,55 @@
+package markovstock;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+* Original layout: table SIMULATION<SYM> with one row per path and one DAYn
+* column per simulated day.
+*/
+public class WideSimulationLayout implements SimulationLayout {
+    private final String symbol;
+    private final int numDays;
+
+    /**
+    * Constructor with all values given.
+    *
+    * @param sym
+    * @param numDays
+    */
+    public WideSimulationLayout(String sym, int numDays){
+        this.symbol = sym.toUpperCase();
+        this.numDays = numDays;
+    }
+
+    @Override
+    public PreparedStatement prepare(Connection con) throws SQLException{
+        Statement statement = con.createStatement();
+        String query = "CREATE TABLE IF NOT EXISTS SIMULATION" + symbol + " (" +
+        "ITERATION INT PRIMARY KEY	NOT NULL, ";
+        for (int i = 0; i < numDays; i++){
+            query += "DAY" + (i+1) + " DOUBLE PRECISION	NOT NULL, ";
+        }
+        query = query.substring(0, query.length() - 2) + ");";
+        statement.executeUpdate(query);
+        statement.close();
+        query = "INSERT INTO SIMULATION" + symbol + " VALUES (?, ";
+        for (int i = 0; i < numDays; i++){
+            query += "?, ";
+        }
+        query = query.substring(0, query.length() - 2) + ");";
+        return con.prepareStatement(query);
+    }
+
+    @Override
+    public int addPath(PreparedStatement insertion, int sim, double[] path) throws SQLException{
+        insertion.setInt(1, sim + 1);
+        for (int j = 0; j < path.length; j++){
+            insertion.setDouble(j+2, path[j]);
+        }
+        insertion.addBatch();
+        return 1;
+    }
+}
@@ -0,0 +1,54 @@
+package markovstock;
+
+/**
+* xoshiro256** generator (Blackman and Vigna). Small, fast and unsynchronized;
+* the 256-bit state is expanded from the seed with SplitMix64.
+*/
+public class XoshiroRandom implements RandomSource {
+    public static final RandomSourceFactory FACTORY = new RandomSourceFactory(){
+        @Override
+        public RandomSource create(long seed){
+            return new XoshiroRandom(seed);
+        }
+    };
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    /**
+    * Constructor with seed given.
+    *
+    * @param seed
+    */
+    public XoshiroRandom(long seed){
+        long x = seed;
+        s0 = SplitMix.mix64(x += SplitMix.GOLDEN_GAMMA);
+        s1 = SplitMix.mix64(x += SplitMix.GOLDEN_GAMMA);
+        s2 = SplitMix.mix64(x += SplitMix.GOLDEN_GAMMA);
+        s3 = SplitMix.mix64(x + SplitMix.GOLDEN_GAMMA);
+    }
+
+    /**
+    * Advances the generator.
+    *
+    * @return long representing next 64 random bits
+    */
+    public long nextLong(){
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    @Override
+    public double nextDouble(){
+        return (nextLong() >>> 11) * SplitMix.DOUBLE_UNIT;
+    }
+}
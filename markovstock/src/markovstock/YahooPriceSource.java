@@ -0,0 +1,42 @@
+package markovstock;
+
+import java.io.IOException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+/**
+* Reads the last trade price off the Yahoo Finance quote page. Each call
+* downloads and parses the whole page, so it is best used behind a
+* CachingPriceSource.
+*/
+public class YahooPriceSource implements PriceSource {
+    private static final int DEFAULT_TIMEOUT_MILLIS = 10000;
+
+    private volatile int timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    @Override
+    public double getPrice(String symbol) throws IOException{
+        long timer = Metrics.start();
+        try{
+            Document page = Jsoup.connect("http://finance.yahoo.com/q?s=" + symbol).timeout(timeoutMillis).get();
+            Element priceEle = page.getElementById("yfs_l84_" + symbol.toLowerCase());
+            if (priceEle == null){
+                throw new IOException("No price for " + symbol + " on quote page");
+            }
+            try{
+                return Double.parseDouble(priceEle.text().replace(",", ""));
+            }
+            catch (NumberFormatException e){
+                throw new IOException("Unreadable price for " + symbol + ": " + priceEle.text(), e);
+            }
+        }
+        finally{
+            Metrics.stop(Metrics.Phase.FETCH, timer);
+        }
+    }
+
+    public void setTimeoutMillis(int timeoutMillis){
+        this.timeoutMillis = timeoutMillis;
+    }
+}
@@ -0,0 +1,66 @@
+package markovstock;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class BatchPathGeneratorTest {
+    private static final double[][] TRANSITIONS = {
+        {0.5, 0.2, 0.1, 0.2, 0.0},
+        {0.3, 0.3, 0.2, 0.2, 0.0},
+        {0.1, 0.4, 0.3, 0.2, 0.0},
+        {0.2, 0.2, 0.2, 0.3, 0.1},
+        {0.0, 0.0, 0.0, 0.0, 0.0}
+    };
+    private static final int NUM_SIMS = 300;
+    private static final int NUM_DAYS = 40;
+    private static final double STARTING_PRICE = 100;
+    private static final long SEED = 42L;
+
+    @Test
+    public void batchedPathsMatchUnbatchedWithSplittableRandom() throws InterruptedException{
+        assertSamePaths(SplittableRandomSource.FACTORY);
+    }
+
+    @Test
+    public void batchedPathsMatchUnbatchedWithXoshiro() throws InterruptedException{
+        assertSamePaths(XoshiroRandom.FACTORY);
+    }
+
+    @Test
+    public void partialBlocksMatchPredict(){
+        MarkovChain chain = new MarkovChain("TEST", 1.0, TRANSITIONS);
+        BatchPathGenerator batch = new BatchPathGenerator(chain);
+        batch.setBlockSize(7);
+        final double[][] paths = new double[50][];
+        batch.generate(3, 50, NUM_DAYS, STARTING_PRICE, SEED, new SimulationSink(){
+            @Override
+            public void accept(int sim, double[] path){
+                paths[sim] = path;
+            }
+        });
+        for (int sim = 3; sim < 50; sim++){
+            double[] expected = chain.predict(NUM_DAYS, STARTING_PRICE, chain.getRandomFactory().create(SimulationEngine.pathSeed(SEED, sim)));
+            assertArrayEquals("simulation " + sim, expected, paths[sim], 0.0);
+        }
+    }
+
+    private static void assertSamePaths(RandomSourceFactory randomFactory) throws InterruptedException{
+        MarkovChain chain = new MarkovChain("TEST", 1.0, TRANSITIONS);
+        chain.setRandomFactory(randomFactory);
+        double[][] batched = simulate(chain, true);
+        double[][] unbatched = simulate(chain, false);
+        assertEquals(NUM_SIMS, batched.length);
+        for (int sim = 0; sim < NUM_SIMS; sim++){
+            assertArrayEquals("simulation " + sim, unbatched[sim], batched[sim], 0.0);
+        }
+    }
+
+    private static double[][] simulate(MarkovChain chain, boolean batched) throws InterruptedException{
+        SimulationEngine engine = new SimulationEngine(chain);
+        engine.setChunkSize(64);
+        engine.setBatched(batched);
+        return engine.run(NUM_SIMS, NUM_DAYS, STARTING_PRICE, SEED);
+    }
+}
@@ -0,0 +1,54 @@
+package markovstock;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+
+public class ColumnarPathWriterTest {
+
+    @Test
+    public void shortHorizonRoundTrips() throws IOException{
+        assertRoundTrip(5000, 20, false);
+    }
+
+    /**
+    * 2000 days put fewer than the 4096 paths of a full group in each row
+    * group, so this spans several groups and a partial last one.
+    */
+    @Test
+    public void longHorizonRoundTrips() throws IOException{
+        assertRoundTrip(1500, 2000, true);
+    }
+
+    private static void assertRoundTrip(int numSims, int numDays, boolean gzip) throws IOException{
+        File file = File.createTempFile("paths", ".columnar");
+        try{
+            Random random = new Random(numSims);
+            double[][] paths = new double[numSims][numDays];
+            ColumnarPathWriter writer = new ColumnarPathWriter(file, numDays, 100, gzip);
+            try{
+                for (int sim = numSims - 1; sim >= 0; sim--){
+                    for (int day = 0; day < numDays; day++){
+                        paths[sim][day] = 100 * (1 + random.nextGaussian() * 0.01);
+                    }
+                    writer.accept(sim, paths[sim]);
+                }
+            }
+            finally{
+                writer.close();
+            }
+            double[][] read = ColumnarPathWriter.readAll(file);
+            assertEquals(numSims, read.length);
+            for (int sim = 0; sim < numSims; sim++){
+                assertArrayEquals("simulation " + sim, paths[sim], read[sim], 0.0);
+            }
+        }
+        finally{
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package markovstock;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+public class MatrixPowersTest {
+    private static final double[][] TRANSITIONS = {
+        {0.5, 0.2, 0.1, 0.2, 0.0},
+        {0.3, 0.3, 0.2, 0.2, 0.0},
+        {0.1, 0.4, 0.3, 0.2, 0.0},
+        {0.2, 0.2, 0.2, 0.3, 0.1},
+        {0.0, 0.0, 0.0, 0.0, 0.0}
+    };
+
+    @Test
+    public void horizonMatchesRowsOfPowers(){
+        MatrixPowers powers = new MatrixPowers(TRANSITIONS);
+        for (int state = 0; state < TRANSITIONS.length; state++){
+            double[][] distributions = powers.horizon(state, 20);
+            for (int day = 0; day < 20; day++){
+                assertArrayEquals("state " + state + ", day " + (day + 1), powers.power(day + 1)[state], distributions[day], 1e-12);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void horizonRejectsZeroDays(){
+        new MatrixPowers(TRANSITIONS).horizon(0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void predictHorizonRejectsNegativeDays(){
+        new MarkovChain("TEST", 1.0, TRANSITIONS).predictHorizon(0, 1, -1);
+    }
+}
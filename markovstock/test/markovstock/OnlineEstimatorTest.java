@@ -0,0 +1,88 @@
+package markovstock;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class OnlineEstimatorTest {
+    private static final int NUM_STATES = 5;
+    private static final int NUM_CLOSES = 3000;
+
+    @Test
+    public void windowMatchesReplayClassifyingOnArrival(){
+        assertWindowMatchesReplay(500);
+    }
+
+    @Test
+    public void shortWindowMatchesReplayClassifyingOnArrival(){
+        assertWindowMatchesReplay(7);
+    }
+
+    /**
+    * Feeds a seeded random walk, with some unchanged closes, to a window
+    * estimator and checks it against a replay that keeps every move: each
+    * move is classified against the average of the window it arrived in,
+    * and the transitions among the last $moves moves are counted.
+    */
+    private static void assertWindowMatchesReplay(int moves){
+        OnlineEstimator estimator = OnlineEstimator.window("TEST", moves);
+        estimator.setPublishInterval(Integer.MAX_VALUE);
+        Random random = new Random(7);
+        List<Double> changes = new ArrayList<Double>();
+        List<Integer> states = new ArrayList<Integer>();
+        double close = 100;
+        estimator.add(close);
+        for (int i = 1; i < NUM_CLOSES; i++){
+            double next = random.nextInt(10) == 0 ? close : close * (1 + random.nextGaussian() * 0.015);
+            changes.add(100.0 * ((next - close) / close));
+            states.add(ParseData.classifyDifference(changes.get(i - 1), averageOfWindow(changes, moves)));
+            close = next;
+            estimator.add(close);
+            if (i % 97 == 0 || i == NUM_CLOSES - 1){
+                int first = Math.max(changes.size() - moves, 0);
+                assertEquals(changes.size() - first, estimator.getNumChanges());
+                assertEquals(averageOfWindow(changes, moves), estimator.getAverageChange(), 1e-9);
+                double[][] expected = normalize(countTransitions(states, first));
+                double[][] actual = estimator.getTransitionMatrix();
+                for (int row = 0; row < NUM_STATES; row++){
+                    assertArrayEquals("after " + i + " moves, row " + row, expected[row], actual[row], 1e-12);
+                }
+            }
+        }
+    }
+
+    private static double averageOfWindow(List<Double> changes, int moves){
+        int first = Math.max(changes.size() - moves, 0);
+        double sum = 0;
+        for (int i = first; i < changes.size(); i++){
+            sum += Math.abs(changes.get(i));
+        }
+        return sum / (changes.size() - first);
+    }
+
+    private static double[][] countTransitions(List<Integer> states, int first){
+        double[][] counts = new double[NUM_STATES][NUM_STATES];
+        for (int i = first + 1; i < states.size(); i++){
+            counts[states.get(i - 1)][states.get(i)]++;
+        }
+        return counts;
+    }
+
+    private static double[][] normalize(double[][] counts){
+        double[][] matrix = new double[NUM_STATES][NUM_STATES];
+        for (int i = 0; i < NUM_STATES; i++){
+            double sum = 0;
+            for (int j = 0; j < NUM_STATES; j++){
+                sum += counts[i][j];
+            }
+            for (int j = 0; j < NUM_STATES; j++){
+                matrix[i][j] = sum > 0 ? counts[i][j] / sum : 0;
+            }
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,58 @@
+package markovstock;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+
+public class TeeSinkTest {
+    private static final double[][] TRANSITIONS = {
+        {0.5, 0.2, 0.1, 0.2, 0.0},
+        {0.3, 0.3, 0.2, 0.2, 0.0},
+        {0.1, 0.4, 0.3, 0.2, 0.0},
+        {0.2, 0.2, 0.2, 0.3, 0.1},
+        {0.0, 0.0, 0.0, 0.0, 0.0}
+    };
+    private static final int NUM_SIMS = 500;
+    private static final int NUM_DAYS = 30;
+    private static final double STARTING_PRICE = 100;
+    private static final long SEED = 42L;
+
+    /**
+    * Every path reaches the shared sink once, as generated, and the target
+    * ends up with the same statistics as aggregating on its own.
+    */
+    @Test
+    public void aggregateFeedsSharedSinkAndTarget() throws InterruptedException{
+        MarkovChain chain = new MarkovChain("TEST", 1.0, TRANSITIONS);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try{
+            SimulationEngine engine = new SimulationEngine(chain, executor);
+            engine.setChunkSize(16);
+            final double[][] shared = new double[NUM_SIMS][];
+            SimulationStatistics teed = SimulationStatistics.forGenerator(chain, NUM_DAYS, STARTING_PRICE);
+            engine.aggregate(NUM_SIMS, NUM_DAYS, STARTING_PRICE, SEED, new TeeSink<SimulationStatistics>(teed, new SimulationSink(){
+                @Override
+                public synchronized void accept(int sim, double[] path){
+                    assertEquals(null, shared[sim]);
+                    shared[sim] = path;
+                }
+            }));
+            SimulationStatistics alone = engine.aggregate(NUM_SIMS, NUM_DAYS, STARTING_PRICE, SEED);
+
+            double[][] paths = engine.run(NUM_SIMS, NUM_DAYS, STARTING_PRICE, SEED);
+            for (int sim = 0; sim < NUM_SIMS; sim++){
+                assertArrayEquals("simulation " + sim, paths[sim], shared[sim], 0.0);
+            }
+            assertEquals(NUM_SIMS, teed.getCount());
+            for (int day = 0; day < NUM_DAYS; day++){
+                assertEquals(alone.getMean(day), teed.getMean(day), 1e-9);
+            }
+        }
+        finally{
+            executor.shutdown();
+        }
+    }
+}